@@ -1,3 +1,6 @@
+import java.security.MessageDigest
+import java.util.HexFormat
+
 plugins {
     id("java")
     application
@@ -14,12 +17,103 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+// The AST cache keys entries on this, so a new release never reads an old tree. A hash of
+// the compiled classes goes in as build metadata, so neither does a rebuilt snapshot.
+tasks.jar {
+    val classes = sourceSets.main.get().output.classesDirs.asFileTree
+    doFirst {
+        val digest = MessageDigest.getInstance("SHA-256")
+        classes.visit {
+            if (!isDirectory) {
+                digest.update(relativePath.pathString.toByteArray())
+                digest.update(file.readBytes())
+            }
+        }
+        val build = HexFormat.of().formatHex(digest.digest(), 0, 8)
+        manifest.attributes("Implementation-Version" to "${project.version}+$build")
+    }
+}
+
+// Indy string concatenation bootstraps a dozen classes on the first "+" of every run.
+tasks.compileJava {
+    options.compilerArgs.add("-XDstringConcat=inline")
 }
 
+// Start scripts pick up an AppCDS archive next to the jars when cdsArchive has made one.
+tasks.startScripts {
+    doLast {
+        val unix = unixScript
+        unix.writeText(Regex("(?m)^DEFAULT_JVM_OPTS=.*$").replace(unix.readText()) {
+            it.value + "\n[ -f \"\$APP_HOME/lib/jlox.jsa\" ] && " +
+                "DEFAULT_JVM_OPTS=\"\$DEFAULT_JVM_OPTS \\\"-XX:SharedArchiveFile=\$APP_HOME/lib/jlox.jsa\\\"\""
+        })
+        val windows = windowsScript
+        windows.writeText(windows.readText().replaceFirst(
+            "\r\n@rem Find java.exe",
+            "\r\nif exist \"%APP_HOME%\\lib\\jlox.jsa\" set JAVA_OPTS=%JAVA_OPTS% " +
+                "\"-XX:SharedArchiveFile=%APP_HOME%\\lib\\jlox.jsa\"\r\n\r\n@rem Find java.exe"))
+    }
+}
+
+// ./gradlew cdsArchive, then build/install/jlox/bin/jlox starts from the archive.
+tasks.register<Exec>("cdsArchive") {
+    group = "distribution"
+    description = "Dumps the classes of a training run into an AppCDS archive in the installed distribution."
+    dependsOn(tasks.installDist)
+    val home = layout.buildDirectory.dir("install/jlox").get().asFile
+    val training = layout.buildDirectory.dir("cds").get().asFile
+    // The first run fills the AST cache, the second dumps the classes of a cache hit,
+    // which is what repeated runs of a script take.
+    val jlox = home.resolve("bin/jlox").path
+    val script = training.resolve("training.lox").path
+    commandLine("sh", "-c", "\"$1\" \"$2\" && JLOX_OPTS=\"-XX:ArchiveClassesAtExit=$3\" \"$1\" \"$2\"",
+        "sh", jlox, script, home.resolve("lib/jlox.jsa").path)
+    environment("JAVA_OPTS", "-Djlox.cache.dir=${training.resolve("cache")}")
+    doFirst {
+        home.resolve("lib/jlox.jsa").delete()
+        training.resolve("cache").deleteRecursively()
+        training.mkdirs()
+        // Touches every operator and value kind.
+        training.resolve("training.lox").writeText(
+            "(1 + 2) * 3 - -4 / 5 > 6 == !(7 <= 8) ? \"a\" + \"b\" != nil : (false, 9 >= 1) == nil\n")
+    }
+}
+
+// ./gradlew test [-PexcludeTags=timing] leaves out the tests that time themselves.
 tasks.test {
-    useJUnitPlatform()
-}
\ No newline at end of file
+    useJUnitPlatform {
+        providers.gradleProperty("excludeTags").orNull?.let { excludeTags(*it.split(",").toTypedArray()) }
+    }
+    maxHeapSize = "1g"
+}
+
+// ./gradlew jmh [-PjmhIncludes=ScannerBenchmark]
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks with GC profiling and writes JSON results."
+    val results = layout.buildDirectory.file("reports/jmh/results.json")
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+    args("-prof", "gc", "-rf", "json", "-rff", results.get().asFile.absolutePath)
+    providers.gradleProperty("jmhIncludes").orNull?.let { args(it) }
+    // StartupBenchmark launches the installed distribution.
+    dependsOn(tasks.installDist)
+    environment("JLOX_HOME", layout.buildDirectory.dir("install/jlox").get().asFile.path)
+    doFirst { results.get().asFile.parentFile.mkdirs() }
+}
@@ -0,0 +1,87 @@
+package com.jlox.bench;
+
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks. Each shape is a single Lox expression since that is
+ * all the parser accepts. Large inputs are balanced trees so that every phase, including
+ * the recursive ones, can handle them; "nested" is the deep case.
+ */
+public final class BenchmarkSources {
+
+    private static final String[] operators = {"+", "-", "*", "/"};
+
+    private BenchmarkSources() {
+    }
+
+    public static String of(String shape) {
+        StringBuilder source = new StringBuilder();
+        switch (shape) {
+            case "small":
+                return "(1 + 2) * 3 - 4 / 5 == 6 ? \"yes\" : \"no\"";
+            case "large":
+                balanced(source, new Random(42), 1 << 17, false);
+                return source.toString();
+            case "nested":
+                return nested(1_000);
+            case "comments":
+                balanced(source, new Random(42), 1 << 15, true);
+                return source.toString();
+            case "repetitive":
+                repetitive(source, new Random(42), 1 << 17);
+                return source.toString();
+            default:
+                throw new IllegalArgumentException("Unknown source shape " + shape);
+        }
+    }
+
+    private static void balanced(StringBuilder source, Random random, int leaves, boolean comments) {
+        if (leaves == 1) {
+            source.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+            return;
+        }
+        source.append('(');
+        balanced(source, random, leaves / 2, comments);
+        if (comments) {
+            source.append(random.nextBoolean()
+                    ? " // left half of " + leaves + "\n"
+                    : " /* left half of " + leaves + " /* nested */ */");
+        }
+        source.append(' ').append(operators[random.nextInt(operators.length)]).append(' ');
+        balanced(source, random, leaves - leaves / 2, comments);
+        source.append(')');
+        if (leaves % 64 == 0) source.append('\n');
+    }
+
+    // One line of a balanced tree whose subtrees of 16 leaves come from a pool of 64, the
+    // way generated scripts repeat themselves.
+    private static void repetitive(StringBuilder source, Random random, int leaves) {
+        String[] pool = new String[64];
+        for (int i = 0; i < pool.length; i++) {
+            StringBuilder subtree = new StringBuilder();
+            balanced(subtree, random, 16, false);
+            pool[i] = subtree.toString();
+        }
+        repetitive(source, random, pool, leaves);
+    }
+
+    private static void repetitive(StringBuilder source, Random random, String[] pool, int leaves) {
+        if (leaves <= 16) {
+            source.append(pool[random.nextInt(pool.length)]);
+            return;
+        }
+        source.append('(');
+        repetitive(source, random, pool, leaves / 2);
+        source.append(' ').append(operators[random.nextInt(operators.length)]).append(' ');
+        repetitive(source, random, pool, leaves - leaves / 2);
+        source.append(')');
+    }
+
+    private static String nested(int depth) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < depth; i++) source.append("(").append(i).append(" + ");
+        source.append("0");
+        for (int i = 0; i < depth; i++) source.append(")");
+        return source.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.jlox.bench;
+
+import com.jlox.interp.ColumnEvaluator;
+import com.jlox.parser.Parser;
+import com.jlox.scanner.Scanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One expression over three columns, evaluated a whole batch at a time against one row
+ * at a time through the same evaluator. The large batch also goes through fork/join.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnBenchmark {
+
+    private static final String SOURCE = "(x * y + z > 1) ? (x - y / 2) : (z * z)";
+
+    @Param({"1024", "1048576"})
+    public int rows;
+
+    private ColumnEvaluator evaluator;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+
+    @Setup
+    public void setUp() {
+        evaluator = new ColumnEvaluator(new Parser(new Scanner(SOURCE)).parse(), List.of("x", "y", "z"));
+        Random random = new Random(42);
+        x = new double[rows];
+        y = new double[rows];
+        z = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            x[i] = random.nextDouble();
+            y[i] = random.nextDouble();
+            z[i] = random.nextDouble() * 2;
+        }
+    }
+
+    @Benchmark
+    public double[] columns() {
+        return evaluator.evaluate(x, y, z);
+    }
+
+    @Benchmark
+    public double rowAtATime() {
+        double sum = 0;
+        for (int i = 0; i < rows; i++) {
+            sum += evaluator.evaluate(new double[]{x[i]}, new double[]{y[i]}, new double[]{z[i]})[0];
+        }
+        return sum;
+    }
+}
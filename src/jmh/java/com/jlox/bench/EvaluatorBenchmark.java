@@ -0,0 +1,56 @@
+package com.jlox.bench;
+
+import com.jlox.interp.CompilingEvaluator;
+import com.jlox.interp.Interpreter;
+import com.jlox.interp.SpecializingEvaluator;
+import com.jlox.parser.Expression;
+import com.jlox.parser.Parser;
+import com.jlox.scanner.Scanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repeated evaluation of one unfolded expression, the case the specialising nodes and
+ * the handle compiler are for: the tree-walking interpreter against the node tree, which
+ * specialises during warmup and then stays specialised, and against the compiled handle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+    @Param({"small", "large", "nested"})
+    public String shape;
+
+    private Expression expression;
+    private Interpreter interpreter;
+    private SpecializingEvaluator specializing;
+    private CompilingEvaluator compiling;
+
+    @Setup
+    public void setUp() {
+        expression = new Parser(new Scanner(BenchmarkSources.of(shape))).parse();
+        interpreter = new Interpreter();
+        specializing = new SpecializingEvaluator(expression);
+        compiling = new CompilingEvaluator(1);
+    }
+
+    @Benchmark
+    public Object interpreter() {
+        return interpreter.evaluate(expression);
+    }
+
+    @Benchmark
+    public Object specializing() {
+        return specializing.evaluate();
+    }
+
+    @Benchmark
+    public Object compiled() {
+        return compiling.evaluate(expression);
+    }
+}
@@ -0,0 +1,48 @@
+package com.jlox.bench;
+
+import com.jlox.parser.Expression;
+import com.jlox.parser.FlatAst;
+import com.jlox.parser.HashConsing;
+import com.jlox.parser.Parser;
+import com.jlox.scanner.Scanner;
+import com.jlox.scanner.Token;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"small", "large", "nested", "comments", "repetitive"})
+    public String shape;
+
+    private List<Token> tokens;
+
+    @Setup
+    public void setUp() {
+        tokens = new Scanner(BenchmarkSources.of(shape)).scanTokens();
+    }
+
+    @Benchmark
+    public Expression parse() {
+        return new Parser(tokens).parse();
+    }
+
+    @Benchmark
+    public Expression parseShared() {
+        Parser parser = new Parser(tokens);
+        parser.setNodeFactory(new HashConsing());
+        return parser.parse();
+    }
+
+    @Benchmark
+    public FlatAst parseFlat() {
+        return new Parser(tokens).parseFlat();
+    }
+}
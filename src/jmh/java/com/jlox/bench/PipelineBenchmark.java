@@ -0,0 +1,47 @@
+package com.jlox.bench;
+
+import com.jlox.Jlox;
+import com.jlox.error.Error;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole {@link Jlox#run} path. Its console output is discarded so the benchmark
+ * measures jlox rather than the terminal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Param({"small", "large", "nested", "comments"})
+    public String shape;
+
+    private String source;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() {
+        source = BenchmarkSources.of(shape);
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public void run() {
+        Jlox.run(source);
+        Error.setHandlerError(false);
+        Error.setRuntimeError(false);
+    }
+}
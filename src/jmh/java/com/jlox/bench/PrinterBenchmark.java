@@ -0,0 +1,39 @@
+package com.jlox.bench;
+
+import com.jlox.parser.AstPrinter;
+import com.jlox.parser.Expression;
+import com.jlox.parser.Parser;
+import com.jlox.parser.RPN;
+import com.jlox.scanner.Scanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrinterBenchmark {
+
+    @Param({"small", "large", "nested", "comments"})
+    public String shape;
+
+    private Expression expression;
+
+    @Setup
+    public void setUp() {
+        expression = new Parser(new Scanner(BenchmarkSources.of(shape))).parse();
+    }
+
+    @Benchmark
+    public String astPrinter() {
+        return new AstPrinter().print(expression);
+    }
+
+    @Benchmark
+    public String rpn() {
+        return new RPN().print(expression);
+    }
+}
@@ -0,0 +1,47 @@
+package com.jlox.bench;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.scanner.ParallelScanner;
+import com.jlox.scanner.Scanner;
+import com.jlox.scanner.Token;
+import com.jlox.scanner.TokenBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScannerBenchmark {
+
+    @Param({"small", "large", "nested", "comments"})
+    public String shape;
+
+    private String source;
+
+    @Setup
+    public void setUp() {
+        source = BenchmarkSources.of(shape);
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Scanner(source).scanTokens();
+    }
+
+    @Benchmark
+    public TokenBuffer scanBuffer() {
+        return new Scanner(source).scanBuffer();
+    }
+
+    // One chunk per core whatever the size, since the shapes are below MIN_CHUNK.
+    @Benchmark
+    public TokenBuffer scanParallel() {
+        return new ParallelScanner(source, new ErrorReporter(),
+                Runtime.getRuntime().availableProcessors()).scanBuffer();
+    }
+}
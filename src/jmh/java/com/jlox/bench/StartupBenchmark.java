@@ -0,0 +1,106 @@
+package com.jlox.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time from launching a fresh jlox process on a small script until its first byte of
+ * output, with class data sharing off as the baseline, with the JDK's default archive,
+ * and with the AppCDS archive of {@code ./gradlew cdsArchive}. The script is run once in
+ * the setup so the measured runs take the AST cache hit.
+ * <p>
+ * Runs the installed distribution found through {@code JLOX_HOME}, which the jmh task
+ * sets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 30)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"baseline", "cds", "appcds"})
+    public String sharing;
+
+    private List<String> command;
+    private Path work;
+    private Process process;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        String home = System.getenv("JLOX_HOME");
+        if (home == null) throw new IllegalStateException("JLOX_HOME is not set");
+        Path lib = Paths.get(home, "lib");
+        work = Files.createTempDirectory("jlox-startup");
+        Path script = work.resolve("startup.lox");
+        Files.writeString(script, "(1 + 2) * 3 - 4 / 5 > 6 == !(7 <= 8)\n");
+
+        command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        switch (sharing) {
+            case "baseline":
+                command.add("-Xshare:off");
+                break;
+            case "appcds":
+                Path archive = lib.resolve("jlox.jsa");
+                if (!Files.exists(archive)) {
+                    throw new IllegalStateException("No " + archive + ", run ./gradlew cdsArchive");
+                }
+                command.add("-XX:SharedArchiveFile=" + archive);
+                break;
+        }
+        command.add("-Djlox.cache.dir=" + work.resolve("cache"));
+        command.add("-cp");
+        try (Stream<Path> jars = Files.list(lib)) {
+            command.add(jars.filter(jar -> jar.toString().endsWith(".jar"))
+                    .map(Path::toString)
+                    .reduce((a, b) -> a + File.pathSeparator + b)
+                    .orElseThrow());
+        }
+        command.add("com.jlox.Jlox");
+        command.add(script.toString());
+        firstOutput();
+        finish();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(work)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int firstOutput() throws IOException {
+        process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        return process.getInputStream().read();
+    }
+
+    // Outside the measured time: drains the rest of the output and reaps the process.
+    @TearDown(Level.Invocation)
+    public void finish() throws IOException, InterruptedException {
+        try (InputStream out = process.getInputStream()) {
+            out.transferTo(OutputStream.nullOutputStream());
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("jlox exited with " + process.exitValue());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.jlox;
+
+import com.jlox.parser.Expression;
+import com.jlox.parser.FlatAst;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of parsed trees, so running an unchanged script skips scanning and
+ * parsing.
+ * <p>
+ * Entries are keyed by a hash and the length of the source bytes together with the jlox
+ * build and the format version, and hold the tree in the binary form of
+ * {@link FlatAst}. A new entry is written to a temporary file and moved into place, so
+ * concurrent runs either see a complete entry or none. Reading an entry touches its
+ * modification time, and after every write the least recently used entries are deleted
+ * until the directory fits in its size budget.
+ * <p>
+ * The cache is an optimization only: any I/O problem or corrupt entry counts as a miss.
+ */
+public class AstCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x4A4C4F58;
+    private static final int FORMAT_VERSION = 3;
+    private static final String SUFFIX = ".ast";
+    private static final String VERSION = version();
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public AstCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The cache in {@code -Djlox.cache.dir}, {@code $XDG_CACHE_HOME/jlox} or
+     * {@code ~/.cache/jlox}, limited to {@code -Djlox.cache.maxBytes}.
+     */
+    public static AstCache open() {
+        String dir = System.getProperty("jlox.cache.dir");
+        Path directory;
+        if (dir != null) {
+            directory = Paths.get(dir);
+        } else if (System.getenv("XDG_CACHE_HOME") != null) {
+            directory = Paths.get(System.getenv("XDG_CACHE_HOME"), "jlox");
+        } else {
+            directory = Paths.get(System.getProperty("user.home"), ".cache", "jlox");
+        }
+        return new AstCache(directory, Long.getLong("jlox.cache.maxBytes", DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * The key of a source: a 128-bit hash of the version and the bytes, and the length.
+     * This is not SHA-256 on purpose: loading the JCA providers alone costs a cached run
+     * about 40 ms, a quarter of its total.
+     */
+    public String key(ByteBuffer source) {
+        byte[] version = VERSION.getBytes(StandardCharsets.UTF_8);
+        long[] lanes = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL};
+        mix(lanes, ByteBuffer.wrap(version));
+        mix(lanes, source.duplicate());
+        HexFormat hex = HexFormat.of();
+        return hex.toHexDigits(finish(lanes[0])) + hex.toHexDigits(finish(lanes[1]))
+                + "-" + Integer.toHexString(source.remaining());
+    }
+
+    // Two independent multiply-rotate lanes over little-endian words, in the style of
+    // MurmurHash3's 128-bit variant.
+    private static void mix(long[] lanes, ByteBuffer bytes) {
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        long h1 = lanes[0];
+        long h2 = lanes[1];
+        while (bytes.remaining() >= 8) {
+            long word = bytes.getLong();
+            h1 ^= Long.rotateLeft(word * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+            h1 = Long.rotateLeft(h1, 27) * 5 + 0x52DCE729;
+            h2 ^= Long.rotateLeft(word * 0x4CF5AD432745937FL, 33) * 0x87C37B91114253D5L;
+            h2 = Long.rotateLeft(h2, 31) * 5 + 0x38495AB5;
+        }
+        long tail = 0;
+        for (int shift = 0; bytes.hasRemaining(); shift += 8) {
+            tail |= (bytes.get() & 0xFFL) << shift;
+        }
+        h1 ^= Long.rotateLeft(tail * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+        h2 ^= Long.rotateLeft(tail * 0x4CF5AD432745937FL, 33) * 0x87C37B91114253D5L;
+        lanes[0] = h1 + h2;
+        lanes[1] = h2 + h1 + h1;
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * The cached tree for the key, or null.
+     */
+    public Expression load(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a cache entry of this version");
+            }
+            // The size of the file that was opened, even if it has been replaced since.
+            Expression expression = FlatAst.read(in, channel.size() - 8).toExpression();
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return expression;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            delete(file);
+            return null;
+        }
+    }
+
+    public void store(String key, Expression expression) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream stream = Files.newOutputStream(temporary)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                FlatAst.of(expression).write(out);
+                out.flush();
+            }
+            Path file = directory.resolve(key + SUFFIX);
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temporary = null;
+            evict();
+        } catch (IOException | RuntimeException e) {
+            // Not being able to cache must not fail the run.
+        } finally {
+            if (temporary != null) delete(temporary);
+        }
+    }
+
+    /**
+     * Deletes least recently used entries until the cache fits in its size budget.
+     */
+    void evict() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.getFileName().toString().endsWith(SUFFIX)) continue;
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    entries.add(new Entry(file, attributes.size(), attributes.lastModifiedTime()));
+                    total += attributes.size();
+                } catch (NoSuchFileException e) {
+                    // Evicted by a concurrent run.
+                }
+            }
+        }
+        if (total <= maxBytes) return;
+        entries.sort(Comparator.comparing(Entry::lastUsed));
+        for (Entry entry : entries) {
+            if (total <= maxBytes) break;
+            delete(entry.file());
+            total -= entry.size();
+        }
+    }
+
+    // The jar's version carries a hash of its classes. Outside the jar, the newest class
+    // file stands in for it, so recompiling the parser still retires the old trees.
+    private static String version() {
+        String version = AstCache.class.getPackage().getImplementationVersion();
+        return (version == null ? "dev+" + newestClass() : version) + "/" + FORMAT_VERSION;
+    }
+
+    private static long newestClass() {
+        try {
+            Path classes = Paths.get(AstCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            try (Stream<Path> files = Files.walk(classes)) {
+                return files.mapToLong(file -> file.toFile().lastModified()).max().orElse(0);
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Someone else's problem now; it will be retried on the next eviction.
+        }
+    }
+
+    private record Entry(Path file, long size, FileTime lastUsed) {
+    }
+}
@@ -0,0 +1,106 @@
+package com.jlox;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.parser.Expression;
+import com.jlox.parser.NodeCounter;
+import com.jlox.parser.PrattParser;
+import com.jlox.scanner.Scanner;
+import com.jlox.scanner.Utf8Source;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Scans and parses many scripts concurrently in one JVM.
+ * <p>
+ * Each file is its own compilation unit with its own {@link ErrorReporter}, so units
+ * never see each other's errors, and the results come back in input order whatever
+ * order the work-stealing pool finished them in.
+ */
+public class BatchCompiler {
+
+    public record Result(Path path, int nodes, boolean hadError, List<String> diagnostics) {
+    }
+
+    private final ForkJoinPool pool;
+
+    public BatchCompiler(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public static int run(Path directory) throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".lox"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        BatchCompiler compiler = new BatchCompiler(parallelism);
+        long start = System.nanoTime();
+        List<Result> results;
+        try {
+            results = compiler.compile(files);
+        } finally {
+            compiler.shutdown();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        int failed = 0;
+        for (Result result : results) {
+            if (result.hadError()) failed++;
+            for (String diagnostic : result.diagnostics()) {
+                System.out.println(result.path() + ": " + diagnostic);
+            }
+        }
+        System.out.println("Compiled " + results.size() + " files (" + failed + " with errors) in "
+                + elapsed + " ms on " + parallelism + " threads");
+        return failed > 0 ? 65 : 0;
+    }
+
+    public List<Result> compile(List<Path> files) throws InterruptedException {
+        List<Callable<Result>> tasks = new ArrayList<>(files.size());
+        for (Path file : files) {
+            tasks.add(() -> compile(file));
+        }
+
+        List<Result> results = new ArrayList<>(files.size());
+        List<Future<Result>> futures = pool.invokeAll(tasks);
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                results.add(new Result(files.get(i), 0, true,
+                        List.of("Internal error: " + e.getCause())));
+            }
+        }
+        return results;
+    }
+
+    public static Result compile(Path file) {
+        ErrorReporter reporter = new ErrorReporter();
+        try {
+            Scanner scanner = new Scanner(Utf8Source.map(file), reporter);
+            Expression expression = new PrattParser(scanner, reporter).parse();
+            int nodes = expression == null ? 0 : new NodeCounter().count(expression);
+            return new Result(file, nodes, reporter.hadError(), reporter.getDiagnostics());
+        } catch (IOException e) {
+            return new Result(file, 0, true, List.of("Could not read file: " + e.getMessage()));
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
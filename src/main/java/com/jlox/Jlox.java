@@ -1,65 +1,216 @@
 package com.jlox;
 
+import com.jlox.error.CompileError;
 import com.jlox.error.Error;
+import com.jlox.error.ErrorReporter;
+import com.jlox.interp.Interpreter;
 import com.jlox.parser.*;
+import com.jlox.scanner.ParallelScanner;
 import com.jlox.scanner.Scanner;
 import com.jlox.scanner.Token;
+import com.jlox.scanner.TokenBuffer;
+import com.jlox.scanner.TokenSource;
+import com.jlox.scanner.Utf8Source;
+import com.jlox.vm.Chunk;
+import com.jlox.vm.Compiler;
+import com.jlox.vm.Disassembler;
+import com.jlox.vm.VM;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Jlox {
+    private static boolean useVm = false;
+    private static boolean useCache = true;
+    private static Stats stats = new Stats(false);
+    // Shared by the lines of the prompt, which often repeat an expression or part of one.
+    private static ResultCache results = null;
+
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        useVm = arguments.remove("--vm");
+        useCache = !arguments.remove("--no-cache");
+        if (arguments.remove("--stats")) {
+            stats = new Stats(true);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> stats.print(System.err)));
+        }
+        int batch = arguments.indexOf("--batch");
+        int watch = arguments.indexOf("--watch");
+        int serve = arguments.indexOf("--serve");
+        if (batch >= 0 && batch + 1 < arguments.size()) {
+            arguments.remove(batch);
+            String directory = arguments.remove(batch);
+            if (!arguments.isEmpty()) usage();
+            try {
+                System.exit(BatchCompiler.run(Paths.get(directory)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.exit(70);
+            }
+        } else if (watch >= 0 && watch + 1 < arguments.size()) {
+            arguments.remove(watch);
+            String file = arguments.remove(watch);
+            if (!arguments.isEmpty()) usage();
+            try {
+                System.exit(Watcher.run(Paths.get(file)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.exit(70);
+            }
+        } else if (serve >= 0 && serve + 1 < arguments.size()) {
+            arguments.remove(serve);
+            String socket = arguments.remove(serve);
+            if (!arguments.isEmpty()) usage();
+            System.exit(Server.run(Paths.get(socket)));
+        } else if (batch >= 0 || watch >= 0 || serve >= 0 || arguments.size() > 1) {
+            usage();
+        } else if (arguments.size() == 1) {
+            runFile(arguments.get(0));
         } else {
             runPrompt();
         }
     }
 
+    private static void usage() {
+        System.out.println("Usage: jlox [--vm] [--no-cache] [--stats] [script] | jlox --batch <dir> | jlox --watch <file>"
+                + " | jlox --serve <socket>");
+        System.exit(64);
+    }
+
     public static void runFile(String path) throws IOException {
-        byte[] inputFile = Files.readAllBytes(Paths.get(path));
-        run(new String(inputFile, Charset.defaultCharset()));
+        Utf8Source source = Utf8Source.map(Paths.get(path));
+        stats.source(source.length());
+        if (useCache) {
+            // An unchanged script goes straight from the cache to execution.
+            AstCache cache = AstCache.open();
+            String key = cache.key(source.bytes());
+            Expression expr = cache.load(key);
+            stats.expression(expr);
+            if (expr == null) {
+                expr = parse(source);
+                if (expr != null) cache.store(key, expr);
+            }
+            if (expr != null) execute(expr);
+        } else {
+            parseAndExecute(source);
+        }
 
         // Indicate an error in the exit code.
         if (com.jlox.error.Error.getHandlerError()) System.exit(65);
+        if (Error.getRuntimeError()) System.exit(70);
     }
 
     public static void runPrompt() throws IOException {
-        InputStreamReader input = new InputStreamReader(System.in);
+        InputStreamReader input = new InputStreamReader(System.in, StandardCharsets.UTF_8);
         BufferedReader reader = new BufferedReader(input);
+        results = new ResultCache();
         for (; ; ) {
             System.out.print("> ");
             String line = reader.readLine();
             if (line == null) break;
             run(line);
             Error.setHandlerError(false);
+            Error.setRuntimeError(false);
         }
     }
 
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
+    public static void run(CharSequence source) {
+        stats.source(source.length());
+        parseAndExecute(source);
+    }
+
+    private static void parseAndExecute(CharSequence source) {
+        Expression expr = parse(source);
+        if (expr != null) execute(expr);
+    }
 
-        // For now, just print the tokens.
-        for (Token token : tokens) {
-            System.out.println(token);
+    // Only scans everything before parsing, so the two phases can be told apart, when
+    // something follows them; otherwise the parser pulls tokens from the scanner.
+    private static Expression parse(CharSequence source) {
+        ErrorReporter reporter = new ErrorReporter();
+        TokenSource scanner;
+        // Scripts of several megabytes are scanned up front on all cores.
+        boolean parallel = source.length() >= 2 * ParallelScanner.MIN_CHUNK;
+        if (parallel || stats.active()) {
+            stats.begin(Stats.SCAN);
+            TokenBuffer tokens = parallel
+                    ? new ParallelScanner(source, reporter).scanBuffer()
+                    : new Scanner(source, reporter).scanBuffer();
+            stats.tokens(tokens);
+            stats.end(reporter.errorCount());
+            scanner = tokens.stream();
+        } else {
+            scanner = new Scanner(source, reporter);
         }
-        Parser parser = new Parser(tokens);
+
+        // For now, just print the tokens as the parser pulls them. An anonymous class
+        // rather than a lambda, which would bootstrap invokedynamic on every start.
+        stats.begin(Stats.PARSE);
+        PrattParser parser = new PrattParser(new TokenSource() {
+            @Override
+            public Token next() {
+                Token token = scanner.next();
+                System.out.println(token);
+                return token;
+            }
+        }, reporter);
         Expression expr = parser.parse();
-        if (Error.getHandlerError()) {
+        stats.expression(expr);
+        stats.end(reporter.errorCount());
+        for (String diagnostic : reporter.getDiagnostics()) {
+            System.out.println(diagnostic);
+        }
+        if (reporter.hadError()) {
+            Error.setHandlerError(true);
             System.out.println("Syntax error");
+            return null;
+        }
+        return expr;
+    }
+
+    static void execute(Expression expr) {
+//        System.out.println(new AstPrinter().print(new Binary(new Literal(new Integer(6)), new Token(Token.TokenType.PLUS, "+", null, 0), new Literal(new Integer(10)))));
+        NodeCounter counter = new NodeCounter();
+        int nodesBefore = counter.count(expr);
+        stats.begin(Stats.FOLD);
+        expr = new ConstantFolder(results).fold(expr);
+        stats.expression(expr);
+        stats.end(0);
+        System.out.println("Folded nodes: " + nodesBefore + " -> " + counter.count(expr));
+
+        if (useVm) {
+            stats.begin(Stats.PRINT);
+            Chunk chunk;
+            try {
+                chunk = new Compiler().compile(expr);
+            } catch (CompileError error) {
+                Error.error(error.getLine(), error.getMessage());
+                stats.end(1);
+                return;
+            }
+            System.out.print(Disassembler.disassemble(chunk));
+            stats.end(0);
+            stats.begin(Stats.EVALUATE);
+            new VM().interpret(chunk);
         } else {
-//            System.out.println(new AstPrinter().print(new Binary(new Literal(new Integer(6)), new Token(Token.TokenType.PLUS, "+", null, 0), new Literal(new Integer(10)))));
-            System.out.println(new AstPrinter().print(expr));
+            stats.begin(Stats.PRINT);
+            try {
+                new AstPrinter().print(expr, System.out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            System.out.println();
+            stats.end(0);
+            stats.begin(Stats.EVALUATE);
+            new Interpreter().interpret(expr);
         }
+        stats.end(Error.getRuntimeError() ? 1 : 0);
     }
 }
\ No newline at end of file
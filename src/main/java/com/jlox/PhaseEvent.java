@@ -0,0 +1,57 @@
+package com.jlox;
+
+import jdk.jfr.*;
+
+/**
+ * A JFR event for one phase of a run, carrying what is known about the script by the
+ * end of it. Record them with {@code -XX:StartFlightRecording} or {@code jcmd JFR.start}
+ * and look for the Jlox category; the fields a phase cannot know yet, like the nodes
+ * during the scan, are zero.
+ */
+@Category("Jlox")
+@StackTrace(false)
+abstract class PhaseEvent extends Event {
+
+    @Label("Source Size")
+    @DataAmount
+    long sourceSize;
+
+    @Label("Tokens")
+    long tokens;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Max Nesting Depth")
+    @Description("Parentheses during the scan, tree depth after the parse")
+    int maxDepth;
+
+    @Label("Errors")
+    int errors;
+
+    @Name("com.jlox.Scan")
+    @Label("Scan")
+    static final class Scan extends PhaseEvent {
+    }
+
+    @Name("com.jlox.Parse")
+    @Label("Parse")
+    static final class Parse extends PhaseEvent {
+    }
+
+    @Name("com.jlox.Fold")
+    @Label("Fold Constants")
+    static final class Fold extends PhaseEvent {
+    }
+
+    @Name("com.jlox.Print")
+    @Label("Print")
+    @Description("Printing the tree, or the bytecode with --vm")
+    static final class Print extends PhaseEvent {
+    }
+
+    @Name("com.jlox.Evaluate")
+    @Label("Evaluate")
+    static final class Evaluate extends PhaseEvent {
+    }
+}
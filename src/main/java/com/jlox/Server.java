@@ -0,0 +1,252 @@
+package com.jlox;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.error.RuntimeError;
+import com.jlox.interp.Interpreter;
+import com.jlox.parser.ConstantFolder;
+import com.jlox.parser.Expression;
+import com.jlox.parser.PrattParser;
+import com.jlox.parser.ResultCache;
+import com.jlox.scanner.Scanner;
+import com.jlox.scanner.Utf8Source;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs scripts sent over a Unix domain socket, so clients skip JVM startup and share a
+ * warm JIT.
+ * <p>
+ * A request is a 4-byte big-endian length followed by that many bytes of UTF-8 source.
+ * The response is a 4-byte exit status (0, 65 for a syntax error or 70 for a runtime
+ * error), a 4-byte length and that many bytes of UTF-8 output: the diagnostics, or the
+ * value the script evaluated to. A client may send any number of requests without
+ * waiting; they are evaluated concurrently and answered in the order they were sent.
+ * <p>
+ * Every request gets its own scanner, parser, {@link ErrorReporter} and interpreter and
+ * never touches the static state in {@link com.jlox.error.Error}, so requests cannot see
+ * each other's errors. Each request is logged with its latency, from being read until
+ * its answer is ready, and the number of requests in flight at that moment. The one
+ * thing they share is a {@link ResultCache} of the values constant subtrees folded to.
+ * <p>
+ * JDK 17 has no virtual threads, so each connection has a reader and a writer thread from
+ * a cached pool and the scripts themselves run on a fixed pool sized to the cores. The
+ * reader stops reading once the requests of a connection that are not yet answered hold
+ * {@link #MAX_PENDING_BYTES}, so a client that sends faster than the pool runs, or never
+ * reads its answers, waits instead of filling the heap.
+ */
+public class Server {
+
+    private static final int MAX_REQUEST_BYTES = 64 * 1024 * 1024;
+    private static final int MAX_PENDING_BYTES = 2 * MAX_REQUEST_BYTES;
+    // Charged per request on top of its source, so empty requests are bounded too.
+    private static final int REQUEST_OVERHEAD = 1024;
+    // File type bits of st_mode.
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFSOCK = 0140000;
+    // Clients tend to send the same scripts, and parts of them, again and again.
+    private static final ResultCache results = new ResultCache();
+
+    public record Response(int status, String output) {
+    }
+
+    // A request in flight and what it holds of the connection's budget.
+    private record Pending(Future<Response> response, int bytes) {
+    }
+
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final ExecutorService workers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+
+    public Server(int parallelism) {
+        this.workers = Executors.newFixedThreadPool(parallelism);
+    }
+
+    public static int run(Path socket) throws IOException {
+        // EX_CANTCREAT: the path is taken.
+        if (!removeStale(socket)) return 73;
+        Server server = new Server(Runtime.getRuntime().availableProcessors());
+        try (ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.bind(UnixDomainSocketAddress.of(socket));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // Nothing left to report to.
+                }
+            }));
+            System.out.println("Listening on " + socket);
+            for (; ; ) {
+                SocketChannel client = channel.accept();
+                server.connections.execute(() -> server.serve(client));
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    // Removes a socket left behind by a server that did not shut down cleanly. Anything
+    // else at the path, or a socket a server still answers on, is left alone.
+    private static boolean removeStale(Path socket) throws IOException {
+        if (!Files.exists(socket, LinkOption.NOFOLLOW_LINKS)) return true;
+        int mode = (Integer) Files.getAttribute(socket, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+        if ((mode & S_IFMT) != S_IFSOCK) {
+            System.err.println(socket + " exists and is not a socket");
+            return false;
+        }
+        try (SocketChannel probe = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            System.err.println("A server is already listening on " + socket);
+            return false;
+        } catch (ConnectException e) {
+            // Nobody is listening.
+        }
+        Files.delete(socket);
+        return true;
+    }
+
+    /**
+     * Runs one script in isolation.
+     */
+    public static Response execute(CharSequence source) {
+        ErrorReporter reporter = new ErrorReporter(false);
+        Expression expression = new PrattParser(new Scanner(source, reporter), reporter).parse();
+        if (reporter.hadError()) {
+            return new Response(65, String.join("\n", reporter.getDiagnostics()) + "\nSyntax error");
+        }
+        try {
+            Object value = new Interpreter().evaluate(new ConstantFolder(results).fold(expression));
+            return new Response(0, Interpreter.stringify(value));
+        } catch (RuntimeError error) {
+            reporter.runtimeError(error);
+            return new Response(70, String.join("\n", reporter.getDiagnostics()));
+        }
+    }
+
+    // Reads and writes go to the channel directly: the streams of Channels would make
+    // the writer wait for the blocked reader.
+    private void serve(SocketChannel client) {
+        BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+        // Bytes the reader may still take in; the writer gives them back.
+        Semaphore budget = new Semaphore(MAX_PENDING_BYTES);
+        // Marks the end of the request stream for the writer.
+        Pending end = new Pending(CompletableFuture.completedFuture(null), 0);
+        Future<?> writer = connections.submit(() -> write(client, pending, end, budget));
+        try (client) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            while (read(client, header.clear())) {
+                int length = header.getInt(0);
+                if (length < 0 || length > MAX_REQUEST_BYTES) {
+                    throw new IOException("Request of " + length + " bytes");
+                }
+                int bytes = length + REQUEST_OVERHEAD;
+                acquire(budget, bytes, writer);
+                ByteBuffer source = ByteBuffer.allocate(length);
+                if (!read(client, source)) throw new EOFException("Request cut short");
+                long received = System.nanoTime();
+                long id = requests.incrementAndGet();
+                inFlight.incrementAndGet();
+                pending.add(new Pending(workers.submit(() -> {
+                    Response response;
+                    try {
+                        response = execute(new Utf8Source(source.flip()));
+                    } catch (RuntimeException | StackOverflowError e) {
+                        response = new Response(70, "Internal error: " + e);
+                    }
+                    int active = inFlight.getAndDecrement();
+                    System.out.printf("request %d: status %d, %.3f ms, %d in flight%n",
+                            id, response.status(), (System.nanoTime() - received) / 1e6, active);
+                    return response;
+                }), bytes));
+            }
+            pending.add(end);
+            writer.get();
+        } catch (IOException | ExecutionException e) {
+            System.out.println("Connection closed: " + e.getMessage());
+            writer.cancel(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.cancel(true);
+        }
+    }
+
+    // Waits for the writer to give back enough of the budget. A writer that failed gives
+    // nothing back, so its failure ends the connection instead.
+    private static void acquire(Semaphore budget, int bytes, Future<?> writer)
+            throws IOException, InterruptedException, ExecutionException {
+        while (!budget.tryAcquire(bytes, 1, TimeUnit.SECONDS)) {
+            if (writer.isDone()) {
+                writer.get();
+                throw new IOException("Writer stopped");
+            }
+        }
+    }
+
+    // Fills the buffer. Returns false if the stream ended before the first byte.
+    private static boolean read(SocketChannel client, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                if (buffer.position() == 0) return false;
+                throw new EOFException("Request cut short");
+            }
+        }
+        return true;
+    }
+
+    private Void write(SocketChannel client, BlockingQueue<Pending> pending, Pending end, Semaphore budget)
+            throws IOException, InterruptedException, ExecutionException {
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        for (; ; ) {
+            // Send whenever the writer would otherwise wait, so pipelined answers are
+            // batched but nobody waits on a buffered answer.
+            Pending next = pending.poll();
+            if (next == null) {
+                send(client, out);
+                next = pending.take();
+            }
+            if (next == end) break;
+            Response response = next.response().get();
+            byte[] output = response.output().getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < 8 + output.length) {
+                send(client, out);
+                if (out.capacity() < 8 + output.length) out = ByteBuffer.allocate(8 + output.length);
+            }
+            out.putInt(response.status()).putInt(output.length).put(output);
+            budget.release(next.bytes());
+        }
+        send(client, out);
+        return null;
+    }
+
+    private static void send(SocketChannel client, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) client.write(buffer);
+        buffer.clear();
+    }
+
+    public void shutdown() {
+        connections.shutdownNow();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,159 @@
+package com.jlox;
+
+import com.jlox.parser.DepthCounter;
+import com.jlox.parser.Expression;
+import com.jlox.parser.NodeCounter;
+import com.jlox.scanner.Token;
+import com.jlox.scanner.TokenBuffer;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Follows the phases of a run: each one is committed as a {@link PhaseEvent} and, with
+ * {@code --stats}, its time and allocation are added up for a summary printed at exit.
+ * <p>
+ * Loading an event class initializes JFR, which alone costs more than a whole run, so
+ * events are only created once JFR is up, as the {@code jdk.jfr.repository} property it
+ * sets tells, and their node count and depth only computed once {@code shouldCommit()}
+ * says a recording wants them. Without {@code --stats} no clock or allocation counter is
+ * read either, which leaves the calls free to stay in.
+ */
+final class Stats {
+
+    static final int SCAN = 0;
+    static final int PARSE = 1;
+    static final int FOLD = 2;
+    static final int PRINT = 3;
+    static final int EVALUATE = 4;
+
+    private static final String[] names = {"scan", "parse", "fold", "print", "evaluate"};
+
+    private final boolean summary;
+    private final long[] nanos = new long[names.length];
+    private final long[] bytes = new long[names.length];
+    private final int[] runs = new int[names.length];
+    private com.sun.management.ThreadMXBean threads;
+
+    private int phase;
+    private PhaseEvent event;
+    private long startNanos;
+    private long startBytes;
+
+    // What is known about the script of the current run so far.
+    private long sourceSize;
+    private TokenBuffer tokens;
+    private Expression expression;
+
+    Stats(boolean summary) {
+        this.summary = summary;
+        if (summary) threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    /**
+     * Starts a new run; everything known about the previous script is forgotten.
+     */
+    void source(long size) {
+        sourceSize = size;
+        tokens = null;
+        expression = null;
+    }
+
+    void tokens(TokenBuffer tokens) {
+        this.tokens = tokens;
+    }
+
+    void expression(Expression expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Whether anything follows the phases: the summary, or a JFR recording.
+     */
+    boolean active() {
+        return summary || recording();
+    }
+
+    private static boolean recording() {
+        return System.getProperty("jdk.jfr.repository") != null;
+    }
+
+    void begin(int phase) {
+        this.phase = phase;
+        if (summary) {
+            startBytes = threads.getCurrentThreadAllocatedBytes();
+            startNanos = System.nanoTime();
+        }
+        if (recording()) {
+            event = event(phase);
+            event.begin();
+        }
+    }
+
+    void end(int errors) {
+        if (summary) {
+            nanos[phase] += System.nanoTime() - startNanos;
+            bytes[phase] += threads.getCurrentThreadAllocatedBytes() - startBytes;
+            runs[phase]++;
+        }
+        if (event == null) return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.sourceSize = sourceSize;
+            event.tokens = tokens == null ? 0 : tokens.size();
+            if (expression != null) {
+                event.nodes = new NodeCounter().count(expression);
+                event.maxDepth = new DepthCounter().depth(expression);
+            } else if (tokens != null) {
+                event.maxDepth = parentheses(tokens);
+            }
+            event.errors = errors;
+            event.commit();
+        }
+        event = null;
+    }
+
+    // Not a factory on PhaseEvent: JDK 17 fails to instrument an event class that refers
+    // to its subclasses, with a duplicate class definition once recording.
+    private static PhaseEvent event(int phase) {
+        switch (phase) {
+            case SCAN:
+                return new PhaseEvent.Scan();
+            case PARSE:
+                return new PhaseEvent.Parse();
+            case FOLD:
+                return new PhaseEvent.Fold();
+            case PRINT:
+                return new PhaseEvent.Print();
+            default:
+                return new PhaseEvent.Evaluate();
+        }
+    }
+
+    private static int parentheses(TokenBuffer tokens) {
+        int depth = 0;
+        int max = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token.TokenType type = tokens.type(i);
+            if (type == Token.TokenType.LEFT_PAREN) {
+                max = Math.max(max, ++depth);
+            } else if (type == Token.TokenType.RIGHT_PAREN) {
+                depth--;
+            }
+        }
+        return max;
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-10s %6s %12s %14s%n", "phase", "runs", "time (ms)", "allocated (KB)");
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (runs[i] == 0) continue;
+            out.printf("%-10s %6d %12.3f %14d%n", names[i], runs[i], nanos[i] / 1e6, bytes[i] / 1024);
+            totalNanos += nanos[i];
+            totalBytes += bytes[i];
+        }
+        out.printf("%-10s %6s %12.3f %14d%n", "total", "", totalNanos / 1e6, totalBytes / 1024);
+    }
+}
@@ -0,0 +1,144 @@
+package com.jlox;
+
+import com.jlox.error.Error;
+import com.jlox.error.ErrorReporter;
+import com.jlox.parser.Expression;
+import com.jlox.parser.IncrementalParser;
+import com.jlox.scanner.IncrementalScanner;
+import com.jlox.scanner.TokenBuffer;
+import com.jlox.scanner.TokenEdit;
+import com.jlox.scanner.Utf8Source;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Re-runs a script every time it is saved, re-analysing only what changed.
+ * <p>
+ * The file system only says that the file changed, so the edit is recovered by comparing
+ * the new contents with the previous ones: everything between the common prefix and the
+ * common suffix was replaced, and each byte is compared at most once to find them. That
+ * range goes to the {@link IncrementalScanner} and the resulting token edit to the
+ * {@link IncrementalParser}, which only work around it.
+ */
+public class Watcher {
+
+    private static final long QUIET_MILLIS = 50;
+    private static final int SUFFIX_BLOCK = 4096;
+
+    private final Path file;
+    private final IncrementalScanner scanner = new IncrementalScanner();
+    private final IncrementalParser parser = new IncrementalParser();
+    private byte[] contents;
+
+    public Watcher(Path file) {
+        this.file = file.toAbsolutePath();
+    }
+
+    public static int run(Path file) throws IOException, InterruptedException {
+        Watcher watcher = new Watcher(file);
+        watcher.update();
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            watcher.file.getParent().register(service, ENTRY_CREATE, ENTRY_MODIFY);
+            for (; ; ) {
+                // A save often arrives as several events (truncate, write, rename); wait
+                // until the directory has been quiet for a moment before reading.
+                boolean changed = false;
+                WatchKey key = service.take();
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (watcher.file.getFileName().equals(event.context())) changed = true;
+                    }
+                    if (!key.reset()) return 66;
+                    key = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (changed) watcher.update();
+            }
+        } catch (ClosedWatchServiceException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the file again and, if it changed, analyses and runs it.
+     */
+    public void update() throws IOException {
+        byte[] next;
+        try {
+            next = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            // Editors that save by renaming briefly remove the file.
+            return;
+        }
+        // Where the contents first differ, or -1 if they did not change.
+        int prefix = contents == null ? 0 : Arrays.mismatch(contents, next);
+        if (prefix < 0) return;
+
+        ErrorReporter reporter = new ErrorReporter();
+        Utf8Source source = new Utf8Source(ByteBuffer.wrap(next));
+        long start = System.nanoTime();
+        Expression expr;
+        int tokens;
+        if (contents == null) {
+            TokenBuffer buffer = scanner.scan(source, reporter);
+            expr = parser.parse(buffer, reporter);
+            tokens = buffer.size();
+        } else {
+            int limit = Math.min(contents.length, next.length) - prefix;
+            int suffix = commonSuffix(contents, next, limit);
+            TokenEdit edit = scanner.edit(source, prefix,
+                    contents.length - prefix - suffix, next.length - prefix - suffix, reporter);
+            expr = parser.reparse(edit, reporter);
+            tokens = edit.tokens().size();
+        }
+        long elapsed = System.nanoTime() - start;
+        contents = next;
+
+        System.out.printf("[%s] analysed in %.2f ms: scanned %d of %d tokens, reused %d groups%n",
+                file.getFileName(), elapsed / 1e6, scanner.scanned(), tokens, parser.reused());
+        for (String diagnostic : reporter.getDiagnostics()) {
+            System.out.println(diagnostic);
+        }
+        if (expr == null) {
+            System.out.println("Syntax error");
+        } else {
+            Jlox.execute(expr);
+        }
+        Error.setHandlerError(false);
+        Error.setRuntimeError(false);
+    }
+
+    // The length of the common suffix, at most limit. Whole blocks are compared with
+    // Arrays.equals, which is vectorized, and bytes only in the block that differs.
+    private static int commonSuffix(byte[] a, byte[] b, int limit) {
+        int suffix = 0;
+        while (suffix < limit) {
+            int block = Math.min(SUFFIX_BLOCK, limit - suffix);
+            int aEnd = a.length - suffix;
+            int bEnd = b.length - suffix;
+            if (!Arrays.equals(a, aEnd - block, aEnd, b, bEnd - block, bEnd)) {
+                while (a[aEnd - 1] == b[bEnd - 1]) {
+                    aEnd--;
+                    bEnd--;
+                    suffix++;
+                }
+                return suffix;
+            }
+            suffix += block;
+        }
+        return suffix;
+    }
+}
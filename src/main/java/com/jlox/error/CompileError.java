@@ -0,0 +1,18 @@
+package com.jlox.error;
+
+/**
+ * An expression that parsed but does not fit the limits of a compiled chunk.
+ */
+public class CompileError extends RuntimeException {
+
+    private final int line;
+
+    public CompileError(int line, String message) {
+        super(message);
+        this.line = line;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
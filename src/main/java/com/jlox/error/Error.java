@@ -2,38 +2,43 @@ package com.jlox.error;
 
 import com.jlox.scanner.Token;
 
-import java.util.logging.Logger;
-
-import static com.jlox.scanner.Token.TokenType.EOF;
-
+/**
+ * Error state of the interactive and single-script paths, printed to the console.
+ * Anything that runs several compilation units in one JVM gives each its own
+ * {@link ErrorReporter} instead.
+ */
 public class Error {
-    private static boolean hadError;
-    private static Logger logger = Logger.getLogger(Error.class.getName());
+    private static final ErrorReporter console = new ErrorReporter(true);
+
+    public static ErrorReporter console() {
+        return console;
+    }
 
     public static void error(int line, String message) {
-        report(line, "", message);
+        console.error(line, message);
     }
 
     public static void error(Token token, String message) {
-        if (token.type() == EOF) {
-            report(token.line(), " at end", message);
-        } else {
-            report(token.line(), " at '" + token.lexeme() + "'", message);
-        }
+        console.error(token, message);
     }
 
-    private static void report(int line, String where,
-                               String message) {
-        System.out.println(
-                "[line " + line + "] Error" + where + ": " + message);
-        setHandlerError(true);
+    public static void runtimeError(RuntimeError error) {
+        console.runtimeError(error);
     }
 
     public static boolean getHandlerError() {
-        return hadError;
+        return console.hadError();
     }
 
     public static void setHandlerError(boolean error) {
-        hadError = error;
+        console.setHadError(error);
+    }
+
+    public static boolean getRuntimeError() {
+        return console.hadRuntimeError();
+    }
+
+    public static void setRuntimeError(boolean error) {
+        console.setHadRuntimeError(error);
     }
 }
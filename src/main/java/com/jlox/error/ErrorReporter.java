@@ -0,0 +1,125 @@
+package com.jlox.error;
+
+import com.jlox.scanner.Token;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.jlox.scanner.Token.TokenType.EOF;
+
+/**
+ * Error state of one compilation unit. Every diagnostic is kept in order so a caller
+ * running many units at once can report them per unit; the console reporter behind
+ * {@link Error} also prints each one as it happens.
+ * <p>
+ * A recovering parser can produce the same message over and over, so identical
+ * diagnostics are only recorded once, and once {@code maxErrors} distinct errors have
+ * been recorded the reporter is {@link #isFull() full} and drops the rest.
+ */
+public class ErrorReporter {
+    public static final int DEFAULT_MAX_ERRORS = 100;
+
+    private final boolean echo;
+    private final int maxErrors;
+    private final List<String> diagnostics = new ArrayList<>();
+    private final Set<String> seen = new HashSet<>();
+    private int errorCount;
+    private boolean hadError;
+    private boolean hadRuntimeError;
+
+    public ErrorReporter() {
+        this(false, DEFAULT_MAX_ERRORS);
+    }
+
+    public ErrorReporter(int maxErrors) {
+        this(false, maxErrors);
+    }
+
+    public ErrorReporter(boolean echo) {
+        this(echo, DEFAULT_MAX_ERRORS);
+    }
+
+    public ErrorReporter(boolean echo, int maxErrors) {
+        this.echo = echo;
+        this.maxErrors = maxErrors;
+    }
+
+    public void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    public void error(Token token, String message) {
+        if (token.type() == EOF) {
+            report(token.line(), " at end", message);
+        } else {
+            report(token.line(), " at '" + token.lexeme() + "'", message);
+        }
+    }
+
+    public void runtimeError(RuntimeError error) {
+        add(error.getMessage() + "\n[line " + error.getLine() + "]");
+        hadRuntimeError = true;
+    }
+
+    private void report(int line, String where, String message) {
+        hadError = true;
+        if (isFull()) return;
+        String diagnostic = "[line " + line + "] Error" + where + ": " + message;
+        if (!seen.add(diagnostic)) return;
+        add(diagnostic);
+        if (++errorCount == maxErrors) {
+            add("Too many errors, stopping after " + maxErrors + ".");
+        }
+    }
+
+    /**
+     * Distinct errors recorded so far.
+     */
+    public int errorCount() {
+        return errorCount;
+    }
+
+    public boolean isFull() {
+        return errorCount >= maxErrors;
+    }
+
+    private void add(String diagnostic) {
+        if (echo) {
+            System.out.println(diagnostic);
+        } else {
+            diagnostics.add(diagnostic);
+        }
+    }
+
+    public List<String> getDiagnostics() {
+        return diagnostics;
+    }
+
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    public void reset() {
+        diagnostics.clear();
+        setHadError(false);
+        hadRuntimeError = false;
+    }
+
+    void setHadError(boolean error) {
+        hadError = error;
+        if (!error) {
+            seen.clear();
+            errorCount = 0;
+        }
+    }
+
+    void setHadRuntimeError(boolean error) {
+        hadRuntimeError = error;
+    }
+}
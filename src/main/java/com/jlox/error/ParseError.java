@@ -5,7 +5,11 @@ import com.jlox.scanner.Token;
 public class ParseError extends RuntimeException {
 
     public static ParseError error(Token token, String message) {
-        Error.error(token, message);
+        return error(Error.console(), token, message);
+    }
+
+    public static ParseError error(ErrorReporter reporter, Token token, String message) {
+        reporter.error(token, message);
         return new ParseError();
     }
 
@@ -0,0 +1,21 @@
+package com.jlox.error;
+
+import com.jlox.scanner.Token;
+
+public class RuntimeError extends RuntimeException {
+
+    private final int line;
+
+    public RuntimeError(Token token, String message) {
+        this(token.line(), message);
+    }
+
+    public RuntimeError(int line, String message) {
+        super(message);
+        this.line = line;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,432 @@
+package com.jlox.interp;
+
+import com.jlox.scanner.Token;
+import com.jlox.scanner.Token.TokenType;
+
+/**
+ * Binary operators. A new node is {@link Uninitialized}: its first execution looks at
+ * the operand values and replaces it with the specialisation for them, or with
+ * {@link Generic} if there is none. Specialisations read their operands unboxed and fall
+ * back to {@link Generic} the first time an operand has another type.
+ * <p>
+ * Semantics and errors, including which operand is checked first, are those of
+ * {@link Interpreter}, by way of {@link Operations}.
+ */
+abstract class BinaryNode extends Node {
+
+    final Token operator;
+    Node left;
+    Node right;
+
+    BinaryNode(Token operator, Node left, Node right) {
+        this.operator = operator;
+        this.left = adopt(left);
+        this.right = adopt(right);
+    }
+
+    static BinaryNode of(Token operator, Node left, Node right) {
+        if (operator.type() == TokenType.COMMA) return new Comma(operator, left, right);
+        return new Uninitialized(operator, left, right);
+    }
+
+    @Override
+    void replaceChild(Node child, Node replacement) {
+        if (left == child) left = replacement;
+        if (right == child) right = replacement;
+    }
+
+    Generic generic() {
+        return deoptimize(new Generic(operator, left, right));
+    }
+
+    /**
+     * Finishes the operation generically once its left operand is known.
+     */
+    Object continueWith(Object left) {
+        checkLeft(left);
+        return combine(left, right.execute());
+    }
+
+    void checkLeft(Object left) {
+        Operations.checkLeft(operator, left);
+    }
+
+    Object combine(Object left, Object right) {
+        return Operations.binary(operator, left, right);
+    }
+
+    static double number(Object value) throws UnexpectedResult {
+        if (value instanceof Double number) return number;
+        throw new UnexpectedResult(value);
+    }
+
+    static boolean bool(Object value) throws UnexpectedResult {
+        if (value instanceof Boolean bool) return bool;
+        throw new UnexpectedResult(value);
+    }
+
+    static final class Uninitialized extends BinaryNode {
+
+        Uninitialized(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            checkLeft(leftValue);
+            Object rightValue = right.execute();
+            replace(specialize(leftValue, rightValue));
+            return combine(leftValue, rightValue);
+        }
+
+        private BinaryNode specialize(Object leftValue, Object rightValue) {
+            boolean numbers = leftValue instanceof Double && rightValue instanceof Double;
+            switch (operator.type()) {
+                case PLUS:
+                    if (numbers) return new Add(operator, left, right);
+                    if (leftValue instanceof String && rightValue instanceof String) {
+                        return new Concat(operator, left, right);
+                    }
+                    break;
+                case MINUS:
+                    if (numbers) return new Subtract(operator, left, right);
+                    break;
+                case STAR:
+                    if (numbers) return new Multiply(operator, left, right);
+                    break;
+                case SLASH:
+                    if (numbers) return new Divide(operator, left, right);
+                    break;
+                case GREATER:
+                    if (numbers) return new Greater(operator, left, right);
+                    break;
+                case GREATER_EQUAL:
+                    if (numbers) return new GreaterEqual(operator, left, right);
+                    break;
+                case LESS:
+                    if (numbers) return new Less(operator, left, right);
+                    break;
+                case LESS_EQUAL:
+                    if (numbers) return new LessEqual(operator, left, right);
+                    break;
+                case EQUAL_EQUAL:
+                    if (numbers) return new NumberEqual(operator, left, right, false);
+                    break;
+                case BANG_EQUAL:
+                    if (numbers) return new NumberEqual(operator, left, right, true);
+                    break;
+            }
+            return new Generic(operator, left, right);
+        }
+    }
+
+    static final class Generic extends BinaryNode {
+
+        Generic(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            return continueWith(left.execute());
+        }
+    }
+
+    static final class Comma extends BinaryNode {
+
+        Comma(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            left.execute();
+            return right.execute();
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            left.execute();
+            return right.executeNumber();
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            left.execute();
+            return right.executeBoolean();
+        }
+    }
+
+    /**
+     * Number operands and a number result. Each operator is its own class, so the
+     * operation needs no dispatch either.
+     */
+    abstract static class Arithmetic extends BinaryNode {
+
+        Arithmetic(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        final Object execute() {
+            try {
+                return executeNumber();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        final double leftFailed(UnexpectedResult e) throws UnexpectedResult {
+            return number(generic().continueWith(e.result));
+        }
+
+        final double rightFailed(double left, UnexpectedResult e) throws UnexpectedResult {
+            return number(generic().combine(left, e.result));
+        }
+    }
+
+    static final class Add extends Arithmetic {
+
+        Add(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return leftFailed(e);
+            }
+            try {
+                return a + right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return rightFailed(a, e);
+            }
+        }
+    }
+
+    static final class Subtract extends Arithmetic {
+
+        Subtract(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return leftFailed(e);
+            }
+            try {
+                return a - right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return rightFailed(a, e);
+            }
+        }
+    }
+
+    static final class Multiply extends Arithmetic {
+
+        Multiply(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return leftFailed(e);
+            }
+            try {
+                return a * right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return rightFailed(a, e);
+            }
+        }
+    }
+
+    static final class Divide extends Arithmetic {
+
+        Divide(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return leftFailed(e);
+            }
+            try {
+                return a / right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return rightFailed(a, e);
+            }
+        }
+    }
+
+    /**
+     * Number operands and a boolean result.
+     */
+    abstract static class Comparison extends BinaryNode {
+
+        Comparison(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        final Object execute() {
+            try {
+                return executeBoolean();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        final boolean leftFailed(UnexpectedResult e) throws UnexpectedResult {
+            return bool(generic().continueWith(e.result));
+        }
+
+        final boolean rightFailed(double left, UnexpectedResult e) throws UnexpectedResult {
+            return bool(generic().combine(left, e.result));
+        }
+    }
+
+    static final class Greater extends Comparison {
+
+        Greater(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return leftFailed(e);
+            }
+            try {
+                return a > right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return rightFailed(a, e);
+            }
+        }
+    }
+
+    static final class GreaterEqual extends Comparison {
+
+        GreaterEqual(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return leftFailed(e);
+            }
+            try {
+                return a >= right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return rightFailed(a, e);
+            }
+        }
+    }
+
+    static final class Less extends Comparison {
+
+        Less(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return leftFailed(e);
+            }
+            try {
+                return a < right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return rightFailed(a, e);
+            }
+        }
+    }
+
+    static final class LessEqual extends Comparison {
+
+        LessEqual(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return leftFailed(e);
+            }
+            try {
+                return a <= right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return rightFailed(a, e);
+            }
+        }
+    }
+
+    // Same equality as Double.equals, which the generic path uses.
+    static final class NumberEqual extends Comparison {
+        private final boolean negated;
+
+        NumberEqual(Token operator, Node left, Node right, boolean negated) {
+            super(operator, left, right);
+            this.negated = negated;
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return leftFailed(e);
+            }
+            try {
+                return (Double.compare(a, right.executeNumber()) == 0) != negated;
+            } catch (UnexpectedResult e) {
+                return rightFailed(a, e);
+            }
+        }
+    }
+
+    static final class Concat extends BinaryNode {
+
+        Concat(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            Object a = left.execute();
+            if (!(a instanceof String leftText)) return generic().continueWith(a);
+            Object b = right.execute();
+            if (!(b instanceof String rightText)) return generic().combine(a, b);
+            return leftText.concat(rightText);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.jlox.interp;
+
+import com.jlox.error.RuntimeError;
+import com.jlox.parser.*;
+import com.jlox.scanner.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates one expression over whole columns of numbers at once, binding each variable
+ * to the column of the same name: row {@code i} of the result is the expression with
+ * every variable replaced by row {@code i} of its column.
+ * <p>
+ * The expression is compiled into a short program of column operations, one per
+ * operator, each a plain loop over a chunk of {@link #CHUNK} rows that reads its operands
+ * from the input columns, constants or earlier results and writes a buffer small enough
+ * to stay in cache. The loops have no branches and no boxing, so the JIT unrolls them
+ * into SIMD instructions. A conditional computes both branches and blends them per row
+ * through the boolean mask of its condition. Batches of more than {@link #PARALLEL_ROWS}
+ * rows are split between the threads of the common fork/join pool.
+ * <p>
+ * Only numbers and booleans can be computed this way. Types are checked once, when the
+ * evaluator is built: a type error anywhere in the expression is thrown right away as
+ * the {@link RuntimeError} the {@link Interpreter} would report when it reached it, even
+ * in a branch no row takes. Strings, {@code nil} and conditionals whose branches differ
+ * in type are rejected with an {@link IllegalArgumentException}. Instances are immutable
+ * and can be shared between threads.
+ */
+public class ColumnEvaluator {
+
+    public static final int CHUNK = 1024;
+    public static final int PARALLEL_ROWS = 32 * CHUNK;
+
+    private static final int ADD = 0;
+    private static final int SUBTRACT = 1;
+    private static final int MULTIPLY = 2;
+    private static final int DIVIDE = 3;
+    private static final int NEGATE = 4;
+    private static final int GREATER = 5;
+    private static final int GREATER_EQUAL = 6;
+    private static final int LESS = 7;
+    private static final int LESS_EQUAL = 8;
+    private static final int EQUAL = 9;
+    private static final int NOT_EQUAL = 10;
+    private static final int BOOLEAN_EQUAL = 11;
+    private static final int BOOLEAN_NOT_EQUAL = 12;
+    private static final int NOT = 13;
+    private static final int SELECT_NUMBER = 14;
+    private static final int SELECT_BOOLEAN = 15;
+
+    // The types of the target and the operands of each operation: number, boolean or none.
+    private static final String[] SIGNATURES = {
+            "NNN-", "NNN-", "NNN-", "NNN-", "NN--",
+            "BNN-", "BNN-", "BNN-", "BNN-", "BNN-", "BNN-",
+            "BBB-", "BBB-", "BB--", "NBNN", "BBBB"
+    };
+
+    private final int columnCount;
+    private final boolean predicate;
+    private final int result;
+
+    // Number slots are the input columns, then constants, then buffers; boolean slots are
+    // constants, then buffers.
+    private final int numberSlots;
+    private final int booleanSlots;
+    private final double[] numberConstants;
+    private final boolean[] booleanConstants;
+
+    private final int[] operations;
+    private final int[] targets;
+    private final int[] firsts;
+    private final int[] seconds;
+    private final int[] thirds;
+
+    public ColumnEvaluator(Expression expression, List<String> columns) {
+        Compiler compiler = new Compiler(columns);
+        Operand operand = new ConstantFolder().fold(expression).accept(compiler);
+        columnCount = columns.size();
+        predicate = !operand.number;
+        numberSlots = columnCount + compiler.numberConstants.size() + compiler.numberBuffers;
+        booleanSlots = compiler.booleanConstants.size() + compiler.booleanBuffers;
+        numberConstants = new double[compiler.numberConstants.size()];
+        for (int i = 0; i < numberConstants.length; i++) {
+            numberConstants[i] = compiler.numberConstants.get(i);
+        }
+        booleanConstants = new boolean[compiler.booleanConstants.size()];
+        for (int i = 0; i < booleanConstants.length; i++) {
+            booleanConstants[i] = compiler.booleanConstants.get(i);
+        }
+        result = slot(operand.number, operand.slot);
+        int count = compiler.operations.size() / 5;
+        operations = new int[count];
+        targets = new int[count];
+        firsts = new int[count];
+        seconds = new int[count];
+        thirds = new int[count];
+        for (int i = 0; i < count; i++) {
+            int operation = compiler.operations.get(5 * i);
+            String signature = SIGNATURES[operation];
+            operations[i] = operation;
+            targets[i] = slot(signature.charAt(0) == 'N', compiler.operations.get(5 * i + 1));
+            firsts[i] = slot(signature.charAt(1) == 'N', compiler.operations.get(5 * i + 2));
+            seconds[i] = slot(signature.charAt(2) == 'N', compiler.operations.get(5 * i + 3));
+            thirds[i] = slot(signature.charAt(3) == 'N', compiler.operations.get(5 * i + 4));
+        }
+    }
+
+    // The compiler numbers buffers -1, -2, ... as it cannot know yet how many constants
+    // come before them.
+    private int slot(boolean number, int compiled) {
+        if (compiled >= 0) return compiled;
+        return (number ? columnCount + numberConstants.length : booleanConstants.length) - 1 - compiled;
+    }
+
+    /**
+     * Whether the expression computes a boolean, to be evaluated with {@link #select}.
+     */
+    public boolean isPredicate() {
+        return predicate;
+    }
+
+    /**
+     * Evaluates a number expression for every row. Takes one column per name given to the
+     * constructor, in the same order, all of the same length.
+     */
+    public double[] evaluate(double[]... columns) {
+        if (predicate) throw new IllegalStateException("The expression computes booleans, use select");
+        double[] out = new double[rows(columns)];
+        run(new Batch(columns, out, null));
+        return out;
+    }
+
+    /**
+     * Evaluates a boolean expression for every row, as with {@link #evaluate}.
+     */
+    public boolean[] select(double[]... columns) {
+        if (!predicate) throw new IllegalStateException("The expression computes numbers, use evaluate");
+        boolean[] out = new boolean[rows(columns)];
+        run(new Batch(columns, null, out));
+        return out;
+    }
+
+    private int rows(double[][] columns) {
+        if (columns.length != columnCount) {
+            throw new IllegalArgumentException("Expected " + columnCount + " columns, got " + columns.length);
+        }
+        int rows = columnCount == 0 ? 1 : columns[0].length;
+        for (double[] column : columns) {
+            if (column.length != rows) throw new IllegalArgumentException("Columns differ in length");
+        }
+        return rows;
+    }
+
+    private void run(Batch batch) {
+        int rows = batch.numbers == null ? batch.booleans.length : batch.numbers.length;
+        if (rows <= PARALLEL_ROWS) {
+            evaluate(batch, 0, rows);
+        } else {
+            ForkJoinPool.commonPool().invoke(new Task(batch, 0, rows));
+        }
+    }
+
+    private final class Task extends RecursiveAction {
+        private final Batch batch;
+        private final int from;
+        private final int to;
+
+        Task(Batch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_ROWS) {
+                evaluate(batch, from, to);
+                return;
+            }
+            int middle = from + (to - from) / 2 / CHUNK * CHUNK;
+            invokeAll(new Task(batch, from, middle), new Task(batch, middle, to));
+        }
+    }
+
+    private record Batch(double[][] columns, double[] numbers, boolean[] booleans) {
+    }
+
+    // Evaluates rows [from, to) chunk by chunk with buffers of its own, no larger than needed.
+    private void evaluate(Batch batch, int from, int to) {
+        int size = Math.min(CHUNK, to - from);
+        double[][] numbers = new double[numberSlots][];
+        boolean[][] booleans = new boolean[booleanSlots][];
+        System.arraycopy(batch.columns, 0, numbers, 0, columnCount);
+        for (int i = 0; i < numberConstants.length; i++) {
+            numbers[columnCount + i] = new double[size];
+            Arrays.fill(numbers[columnCount + i], numberConstants[i]);
+        }
+        for (int i = columnCount + numberConstants.length; i < numberSlots; i++) {
+            numbers[i] = new double[size];
+        }
+        for (int i = 0; i < booleanConstants.length; i++) {
+            booleans[i] = new boolean[size];
+            Arrays.fill(booleans[i], booleanConstants[i]);
+        }
+        for (int i = booleanConstants.length; i < booleanSlots; i++) {
+            booleans[i] = new boolean[size];
+        }
+
+        for (int start = from; start < to; start += CHUNK) {
+            int length = Math.min(CHUNK, to - start);
+            for (int i = 0; i < operations.length; i++) {
+                execute(i, numbers, booleans, start, length);
+            }
+            if (predicate) {
+                System.arraycopy(booleans[result], 0, batch.booleans, start, length);
+            } else {
+                System.arraycopy(numbers[result], offset(result, start), batch.numbers, start, length);
+            }
+        }
+    }
+
+    // Only the input columns are indexed by row; every other slot holds just one chunk.
+    private int offset(int numberSlot, int start) {
+        return numberSlot < columnCount ? start : 0;
+    }
+
+    private void execute(int i, double[][] numbers, boolean[][] booleans, int start, int length) {
+        int first = firsts[i];
+        int second = seconds[i];
+        int a = offset(first, start);
+        int b = offset(second, start);
+        switch (operations[i]) {
+            case ADD: {
+                double[] out = numbers[targets[i]], left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) out[j] = left[a + j] + right[b + j];
+                break;
+            }
+            case SUBTRACT: {
+                double[] out = numbers[targets[i]], left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) out[j] = left[a + j] - right[b + j];
+                break;
+            }
+            case MULTIPLY: {
+                double[] out = numbers[targets[i]], left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) out[j] = left[a + j] * right[b + j];
+                break;
+            }
+            case DIVIDE: {
+                double[] out = numbers[targets[i]], left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) out[j] = left[a + j] / right[b + j];
+                break;
+            }
+            case NEGATE: {
+                double[] out = numbers[targets[i]], operand = numbers[first];
+                for (int j = 0; j < length; j++) out[j] = -operand[a + j];
+                break;
+            }
+            case GREATER: {
+                boolean[] out = booleans[targets[i]];
+                double[] left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) out[j] = left[a + j] > right[b + j];
+                break;
+            }
+            case GREATER_EQUAL: {
+                boolean[] out = booleans[targets[i]];
+                double[] left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) out[j] = left[a + j] >= right[b + j];
+                break;
+            }
+            case LESS: {
+                boolean[] out = booleans[targets[i]];
+                double[] left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) out[j] = left[a + j] < right[b + j];
+                break;
+            }
+            case LESS_EQUAL: {
+                boolean[] out = booleans[targets[i]];
+                double[] left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) out[j] = left[a + j] <= right[b + j];
+                break;
+            }
+            // Double.equals, as the interpreter compares numbers.
+            case EQUAL: {
+                boolean[] out = booleans[targets[i]];
+                double[] left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) {
+                    out[j] = Double.doubleToLongBits(left[a + j]) == Double.doubleToLongBits(right[b + j]);
+                }
+                break;
+            }
+            case NOT_EQUAL: {
+                boolean[] out = booleans[targets[i]];
+                double[] left = numbers[first], right = numbers[second];
+                for (int j = 0; j < length; j++) {
+                    out[j] = Double.doubleToLongBits(left[a + j]) != Double.doubleToLongBits(right[b + j]);
+                }
+                break;
+            }
+            case BOOLEAN_EQUAL: {
+                boolean[] out = booleans[targets[i]], left = booleans[first], right = booleans[second];
+                for (int j = 0; j < length; j++) out[j] = left[j] == right[j];
+                break;
+            }
+            case BOOLEAN_NOT_EQUAL: {
+                boolean[] out = booleans[targets[i]], left = booleans[first], right = booleans[second];
+                for (int j = 0; j < length; j++) out[j] = left[j] != right[j];
+                break;
+            }
+            case NOT: {
+                boolean[] out = booleans[targets[i]], operand = booleans[first];
+                for (int j = 0; j < length; j++) out[j] = !operand[j];
+                break;
+            }
+            case SELECT_NUMBER: {
+                double[] out = numbers[targets[i]], then = numbers[second], otherwise = numbers[thirds[i]];
+                boolean[] mask = booleans[first];
+                int c = offset(thirds[i], start);
+                for (int j = 0; j < length; j++) out[j] = mask[j] ? then[b + j] : otherwise[c + j];
+                break;
+            }
+            case SELECT_BOOLEAN: {
+                boolean[] out = booleans[targets[i]], mask = booleans[first];
+                boolean[] then = booleans[second], otherwise = booleans[thirds[i]];
+                for (int j = 0; j < length; j++) out[j] = mask[j] ? then[j] : otherwise[j];
+                break;
+            }
+        }
+    }
+
+    private record Operand(boolean number, int slot) {
+    }
+
+    /**
+     * Types every node and appends the column operations in evaluation order, reusing
+     * a buffer as soon as the operation reading it has been emitted.
+     */
+    private static final class Compiler implements ExpressionVisitor<Operand> {
+        private final List<String> columns;
+        private final List<Double> numberConstants = new ArrayList<>();
+        private final List<Boolean> booleanConstants = new ArrayList<>();
+        private final List<Integer> operations = new ArrayList<>();
+        private final List<Integer> freeNumbers = new ArrayList<>();
+        private final List<Integer> freeBooleans = new ArrayList<>();
+        private int numberBuffers = 0;
+        private int booleanBuffers = 0;
+
+        Compiler(List<String> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public Operand visit(Binary expression) {
+            Token operator = expression.operator();
+            Operand left = expression.left().accept(this);
+            if (operator.type() == Token.TokenType.COMMA) {
+                release(left);
+                return expression.right().accept(this);
+            }
+            switch (operator.type()) {
+                case PLUS:
+                    if (!left.number) throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+                    break;
+                case EQUAL_EQUAL:
+                case BANG_EQUAL:
+                    break;
+                default:
+                    if (!left.number) throw new RuntimeError(operator, "Operands must be numbers.");
+            }
+            Operand right = expression.right().accept(this);
+
+            switch (operator.type()) {
+                case EQUAL_EQUAL:
+                case BANG_EQUAL:
+                    boolean equal = operator.type() == Token.TokenType.EQUAL_EQUAL;
+                    if (left.number != right.number) {
+                        release(left);
+                        release(right);
+                        return booleanConstant(!equal);
+                    }
+                    if (left.number) return emit(equal ? EQUAL : NOT_EQUAL, false, left, right);
+                    return emit(equal ? BOOLEAN_EQUAL : BOOLEAN_NOT_EQUAL, false, left, right);
+                case PLUS:
+                    if (!right.number) throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+                    return emit(ADD, true, left, right);
+            }
+            if (!right.number) throw new RuntimeError(operator, "Operands must be numbers.");
+            switch (operator.type()) {
+                case MINUS:
+                    return emit(SUBTRACT, true, left, right);
+                case STAR:
+                    return emit(MULTIPLY, true, left, right);
+                case SLASH:
+                    return emit(DIVIDE, true, left, right);
+                case GREATER:
+                    return emit(GREATER, false, left, right);
+                case GREATER_EQUAL:
+                    return emit(GREATER_EQUAL, false, left, right);
+                case LESS:
+                    return emit(LESS, false, left, right);
+                case LESS_EQUAL:
+                    return emit(LESS_EQUAL, false, left, right);
+            }
+            throw new RuntimeError(operator, "Unsupported binary operator.");
+        }
+
+        @Override
+        public Operand visit(Literal expression) {
+            Object value = expression.value();
+            if (value instanceof Double number) {
+                numberConstants.add(number);
+                return new Operand(true, columns.size() + numberConstants.size() - 1);
+            }
+            if (value instanceof Boolean bool) return booleanConstant(bool);
+            throw new IllegalArgumentException("Only numbers and booleans can be evaluated by column, not "
+                    + Interpreter.stringify(value));
+        }
+
+        @Override
+        public Operand visit(Unary expression) {
+            Token operator = expression.operator();
+            Operand operand = expression.operand().accept(this);
+            switch (operator.type()) {
+                case MINUS:
+                    if (!operand.number) throw new RuntimeError(operator, "Operand must be a number.");
+                    return emit(NEGATE, true, operand, null);
+                case BANG:
+                    if (operand.number) {
+                        release(operand);
+                        return booleanConstant(false);
+                    }
+                    return emit(NOT, false, operand, null);
+            }
+            throw new RuntimeError(operator, "Unsupported unary operator.");
+        }
+
+        @Override
+        public Operand visit(Grouping expression) {
+            return expression.expression().accept(this);
+        }
+
+        @Override
+        public Operand visit(Ternary expression) {
+            int start = operations.size();
+            Operand condition = expression.left().accept(this);
+            int middle = operations.size();
+            Operand then = expression.middle().accept(this);
+            int end = operations.size();
+            Operand otherwise = expression.right().accept(this);
+            if (then.number != otherwise.number) {
+                throw new IllegalArgumentException("The branches of a conditional evaluated by column "
+                        + "must have the same type");
+            }
+            // Numbers are always truthy. The condition and the else branch are compiled and
+            // checked like everything else, but only the then branch has to run.
+            if (condition.number) {
+                operations.subList(end, operations.size()).clear();
+                operations.subList(start, middle).clear();
+                release(condition);
+                release(otherwise);
+                return then;
+            }
+            release(condition);
+            release(then);
+            release(otherwise);
+            Operand target = allocate(then.number);
+            append(then.number ? SELECT_NUMBER : SELECT_BOOLEAN, target.slot, condition.slot, then.slot, otherwise.slot);
+            return target;
+        }
+
+        @Override
+        public Operand visit(Variable expression) {
+            int column = columns.indexOf(expression.name().lexeme());
+            if (column < 0) {
+                throw new RuntimeError(expression.name(), "Undefined variable '" + expression.name().lexeme() + "'.");
+            }
+            return new Operand(true, column);
+        }
+
+        private Operand booleanConstant(boolean value) {
+            booleanConstants.add(value);
+            return new Operand(false, booleanConstants.size() - 1);
+        }
+
+        // The target may reuse an operand's buffer: every loop reads row j before writing it.
+        private Operand emit(int operation, boolean number, Operand first, Operand second) {
+            release(first);
+            if (second != null) release(second);
+            Operand target = allocate(number);
+            append(operation, target.slot, first.slot, second == null ? 0 : second.slot, 0);
+            return target;
+        }
+
+        private void append(int operation, int target, int first, int second, int third) {
+            operations.add(operation);
+            operations.add(target);
+            operations.add(first);
+            operations.add(second);
+            operations.add(third);
+        }
+
+        private Operand allocate(boolean number) {
+            List<Integer> free = number ? freeNumbers : freeBooleans;
+            if (!free.isEmpty()) return new Operand(number, free.remove(free.size() - 1));
+            return new Operand(number, -1 - (number ? numberBuffers++ : booleanBuffers++));
+        }
+
+        private void release(Operand operand) {
+            if (operand.slot < 0) (operand.number ? freeNumbers : freeBooleans).add(operand.slot);
+        }
+    }
+}
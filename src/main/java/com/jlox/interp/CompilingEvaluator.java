@@ -0,0 +1,127 @@
+package com.jlox.interp;
+
+import com.jlox.parser.Binary;
+import com.jlox.parser.Expression;
+import com.jlox.parser.Grouping;
+import com.jlox.parser.Ternary;
+import com.jlox.parser.Unary;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Evaluates expressions with the {@link Interpreter} until one has been evaluated
+ * {@code threshold} times, then compiles it with a {@link HandleCompiler} and invokes
+ * the handle from then on. Compiling costs far more than interpreting once, so only
+ * expressions that keep coming back are worth it.
+ * <p>
+ * Expressions of more than {@link #MAX_NODES} nodes or deeper than {@link #MAX_DEPTH}
+ * are always interpreted: their handle graphs are beyond what the JIT inlines and run
+ * slower than the interpreter, and deep ones overflow the stack sooner.
+ * <p>
+ * The default threshold comes from the {@code jlox.compile.threshold} system property.
+ * Invocation counts and handles are kept per expression object, and forgotten all at
+ * once when {@link #MAX_PROFILES} expressions have been seen, so an evaluator that is
+ * handed new expressions for its whole life does not keep every one of them. Instances
+ * must not be shared between threads.
+ */
+public class CompilingEvaluator {
+
+    public static final int DEFAULT_THRESHOLD = Integer.getInteger("jlox.compile.threshold", 1_000);
+    public static final int MAX_NODES = 4096;
+    public static final int MAX_DEPTH = 512;
+    public static final int MAX_PROFILES = 4096;
+    // Handles the compiler keeps for reuse, one per node.
+    private static final int MAX_CACHED_HANDLES = 1 << 16;
+
+    private final int threshold;
+    private final Interpreter interpreter = new Interpreter();
+    private final HandleCompiler compiler = new HandleCompiler();
+    private final Map<Expression, Profile> profiles = new IdentityHashMap<>();
+    private int compiled = 0;
+
+    public CompilingEvaluator() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public CompilingEvaluator(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public Object evaluate(Expression expression) {
+        Profile profile = profiles.get(expression);
+        if (profile == null) {
+            if (profiles.size() >= MAX_PROFILES) profiles.clear();
+            profile = new Profile();
+            profiles.put(expression, profile);
+        }
+        if (profile.handle == null) {
+            if (profile.interpreted || ++profile.invocations < threshold) return interpreter.evaluate(expression);
+            if (!fits(expression)) {
+                profile.interpreted = true;
+                return interpreter.evaluate(expression);
+            }
+            if (compiler.cached() >= MAX_CACHED_HANDLES) compiler.clear();
+            profile.handle = compiler.compile(expression);
+            compiled++;
+        }
+        try {
+            return (Object) profile.handle.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Expressions compiled so far.
+     */
+    public int compiled() {
+        return compiled;
+    }
+
+    // Walks at most MAX_NODES nodes, without recursion.
+    private static boolean fits(Expression expression) {
+        Deque<Expression> pending = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        pending.push(expression);
+        depths.push(1);
+        int nodes = 0;
+        while (!pending.isEmpty()) {
+            Expression node = pending.pop();
+            int depth = depths.pop();
+            if (++nodes > MAX_NODES || depth > MAX_DEPTH) return false;
+            if (node instanceof Binary binary) {
+                pending.push(binary.right());
+                depths.push(depth + 1);
+                pending.push(binary.left());
+                depths.push(depth + 1);
+            } else if (node instanceof Unary unary) {
+                pending.push(unary.operand());
+                depths.push(depth + 1);
+            } else if (node instanceof Grouping grouping) {
+                pending.push(grouping.expression());
+                depths.push(depth + 1);
+            } else if (node instanceof Ternary ternary) {
+                pending.push(ternary.right());
+                depths.push(depth + 1);
+                pending.push(ternary.middle());
+                depths.push(depth + 1);
+                pending.push(ternary.left());
+                depths.push(depth + 1);
+            }
+        }
+        return true;
+    }
+
+    private static final class Profile {
+        int invocations = 0;
+        // Too large to compile.
+        boolean interpreted = false;
+        MethodHandle handle;
+    }
+}
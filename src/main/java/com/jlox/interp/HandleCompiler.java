@@ -0,0 +1,281 @@
+package com.jlox.interp;
+
+import com.jlox.parser.*;
+import com.jlox.scanner.Token;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static java.lang.invoke.MethodHandles.*;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Compiles an expression into a chain of {@link MethodHandle} combinators that the JIT
+ * can inline into straight-line code: {@code guardWithTest} for the conditional,
+ * {@code foldArguments} to evaluate the operands of a binary operator left to right and
+ * feed them to it, and {@code filterReturnValue} for unary operators and for the check
+ * the left operand gets before the right one runs.
+ * <p>
+ * Handles return {@code double} or {@code boolean} wherever the operand types make the
+ * result type certain, so number arithmetic is composed from primitive operations
+ * without boxing, and everything else goes through {@link Operations} with the errors of
+ * {@link Interpreter}. The handle of every node is cached, so a subtree shared by several
+ * expressions, as from {@link HashConsing}, is compiled once.
+ */
+public class HandleCompiler implements ExpressionVisitor<MethodHandle> {
+
+    private static final MethodHandle CHECK_LEFT;
+    private static final MethodHandle BINARY;
+    private static final MethodHandle UNARY;
+    private static final MethodHandle UNDEFINED;
+    private static final MethodHandle IS_TRUTHY;
+    private static final MethodHandle NOT;
+    private static final MethodHandle NEGATE;
+    private static final MethodHandle ADD;
+    private static final MethodHandle SUBTRACT;
+    private static final MethodHandle MULTIPLY;
+    private static final MethodHandle DIVIDE;
+    private static final MethodHandle GREATER;
+    private static final MethodHandle GREATER_EQUAL;
+    private static final MethodHandle LESS;
+    private static final MethodHandle LESS_EQUAL;
+    private static final MethodHandle EQUAL;
+    private static final MethodHandle NOT_EQUAL;
+
+    static {
+        MethodHandles.Lookup lookup = lookup();
+        MethodType numbers = methodType(double.class, double.class, double.class);
+        MethodType comparison = methodType(boolean.class, double.class, double.class);
+        try {
+            CHECK_LEFT = lookup.findStatic(Operations.class, "checkLeft",
+                    methodType(Object.class, Token.class, Object.class));
+            BINARY = lookup.findStatic(Operations.class, "binary",
+                    methodType(Object.class, Token.class, Object.class, Object.class));
+            UNARY = lookup.findStatic(Operations.class, "unary",
+                    methodType(Object.class, Token.class, Object.class));
+            UNDEFINED = lookup.findStatic(Operations.class, "undefined",
+                    methodType(Object.class, Token.class));
+            IS_TRUTHY = lookup.findStatic(Operations.class, "isTruthy", methodType(boolean.class, Object.class));
+            NOT = lookup.findStatic(HandleCompiler.class, "not", methodType(boolean.class, boolean.class));
+            NEGATE = lookup.findStatic(HandleCompiler.class, "negate", methodType(double.class, double.class));
+            ADD = lookup.findStatic(HandleCompiler.class, "add", numbers);
+            SUBTRACT = lookup.findStatic(HandleCompiler.class, "subtract", numbers);
+            MULTIPLY = lookup.findStatic(HandleCompiler.class, "multiply", numbers);
+            DIVIDE = lookup.findStatic(HandleCompiler.class, "divide", numbers);
+            GREATER = lookup.findStatic(HandleCompiler.class, "greater", comparison);
+            GREATER_EQUAL = lookup.findStatic(HandleCompiler.class, "greaterEqual", comparison);
+            LESS = lookup.findStatic(HandleCompiler.class, "less", comparison);
+            LESS_EQUAL = lookup.findStatic(HandleCompiler.class, "lessEqual", comparison);
+            EQUAL = lookup.findStatic(HandleCompiler.class, "equal", comparison);
+            NOT_EQUAL = lookup.findStatic(HandleCompiler.class, "notEqual", comparison);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Map<Expression, MethodHandle> compiled = new IdentityHashMap<>();
+
+    /**
+     * Returns a handle of type {@code ()Object} that evaluates the expression.
+     */
+    public MethodHandle compile(Expression expression) {
+        return handle(expression).asType(methodType(Object.class));
+    }
+
+    /**
+     * Nodes whose handles are cached.
+     */
+    int cached() {
+        return compiled.size();
+    }
+
+    void clear() {
+        compiled.clear();
+    }
+
+    private MethodHandle handle(Expression expression) {
+        MethodHandle handle = compiled.get(expression);
+        if (handle == null) {
+            handle = expression.accept(this);
+            compiled.put(expression, handle);
+        }
+        return handle;
+    }
+
+    @Override
+    public MethodHandle visit(Binary expression) {
+        Token operator = expression.operator();
+        MethodHandle left = handle(expression.left());
+        MethodHandle right = handle(expression.right());
+        if (operator.type() == Token.TokenType.COMMA) {
+            return foldArguments(right, left.asType(methodType(void.class)));
+        }
+
+        if (returns(left, double.class) && returns(right, double.class)) {
+            MethodHandle primitive = primitive(operator);
+            if (primitive != null) return apply(primitive, left, right);
+        }
+
+        MethodHandle generic = insertArguments(BINARY, 0, operator);
+        switch (operator.type()) {
+            case MINUS:
+            case STAR:
+            case SLASH:
+                generic = generic.asType(methodType(double.class, Object.class, Object.class));
+                break;
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+            case EQUAL_EQUAL:
+            case BANG_EQUAL:
+                generic = generic.asType(methodType(boolean.class, Object.class, Object.class));
+                break;
+        }
+        MethodHandle checkedLeft = returns(left, double.class)
+                ? boxed(left)
+                : filterReturnValue(boxed(left), insertArguments(CHECK_LEFT, 0, operator));
+        return apply(generic, checkedLeft, boxed(right));
+    }
+
+    @Override
+    public MethodHandle visit(Literal expression) {
+        Object value = expression.value();
+        if (value instanceof Double number) return constant(double.class, number);
+        if (value instanceof Boolean bool) return constant(boolean.class, bool);
+        return constant(Object.class, value);
+    }
+
+    @Override
+    public MethodHandle visit(Unary expression) {
+        Token operator = expression.operator();
+        MethodHandle operand = handle(expression.operand());
+        switch (operator.type()) {
+            case MINUS:
+                if (returns(operand, double.class)) return filterReturnValue(operand, NEGATE);
+                return filterReturnValue(boxed(operand), insertArguments(UNARY, 0, operator)
+                        .asType(methodType(double.class, Object.class)));
+            case BANG:
+                if (returns(operand, boolean.class)) return filterReturnValue(operand, NOT);
+                return filterReturnValue(filterReturnValue(boxed(operand), IS_TRUTHY), NOT);
+        }
+        return filterReturnValue(boxed(operand), insertArguments(UNARY, 0, operator));
+    }
+
+    @Override
+    public MethodHandle visit(Grouping expression) {
+        return handle(expression.expression());
+    }
+
+    @Override
+    public MethodHandle visit(Ternary expression) {
+        MethodHandle condition = handle(expression.left());
+        MethodHandle then = handle(expression.middle());
+        MethodHandle otherwise = handle(expression.right());
+        if (!returns(condition, boolean.class)) {
+            condition = filterReturnValue(boxed(condition), IS_TRUTHY);
+        }
+        if (then.type() != otherwise.type()) {
+            then = boxed(then);
+            otherwise = boxed(otherwise);
+        }
+        return guardWithTest(condition, then, otherwise);
+    }
+
+    @Override
+    public MethodHandle visit(Variable expression) {
+        return insertArguments(UNDEFINED, 0, expression.name());
+    }
+
+    // Evaluates left, then right, then the operator on both.
+    private static MethodHandle apply(MethodHandle operator, MethodHandle left, MethodHandle right) {
+        return foldArguments(foldArguments(operator, 1, right), left);
+    }
+
+    private static MethodHandle primitive(Token operator) {
+        switch (operator.type()) {
+            case PLUS:
+                return ADD;
+            case MINUS:
+                return SUBTRACT;
+            case STAR:
+                return MULTIPLY;
+            case SLASH:
+                return DIVIDE;
+            case GREATER:
+                return GREATER;
+            case GREATER_EQUAL:
+                return GREATER_EQUAL;
+            case LESS:
+                return LESS;
+            case LESS_EQUAL:
+                return LESS_EQUAL;
+            case EQUAL_EQUAL:
+                return EQUAL;
+            case BANG_EQUAL:
+                return NOT_EQUAL;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean returns(MethodHandle handle, Class<?> type) {
+        return handle.type().returnType() == type;
+    }
+
+    private static MethodHandle boxed(MethodHandle handle) {
+        return handle.asType(methodType(Object.class));
+    }
+
+    private static boolean not(boolean value) {
+        return !value;
+    }
+
+    private static double negate(double value) {
+        return -value;
+    }
+
+    private static double add(double left, double right) {
+        return left + right;
+    }
+
+    private static double subtract(double left, double right) {
+        return left - right;
+    }
+
+    private static double multiply(double left, double right) {
+        return left * right;
+    }
+
+    private static double divide(double left, double right) {
+        return left / right;
+    }
+
+    private static boolean greater(double left, double right) {
+        return left > right;
+    }
+
+    private static boolean greaterEqual(double left, double right) {
+        return left >= right;
+    }
+
+    private static boolean less(double left, double right) {
+        return left < right;
+    }
+
+    private static boolean lessEqual(double left, double right) {
+        return left <= right;
+    }
+
+    // Double.equals, as the interpreter compares numbers.
+    private static boolean equal(double left, double right) {
+        return Double.compare(left, right) == 0;
+    }
+
+    private static boolean notEqual(double left, double right) {
+        return Double.compare(left, right) != 0;
+    }
+}
@@ -0,0 +1,208 @@
+package com.jlox.interp;
+
+import com.jlox.error.Error;
+import com.jlox.error.RuntimeError;
+import com.jlox.parser.*;
+import com.jlox.scanner.Token;
+
+import java.util.Objects;
+
+/**
+ * Tree-walking evaluator.
+ * <p>
+ * Every visit leaves its result in one of two slots and returns the {@link Kind}
+ * telling which one: numbers stay in the primitive {@code number} slot so arithmetic
+ * subtrees never box their intermediates, everything else goes to {@code object}.
+ * A chain of string {@code +} shares a single {@link StringBuilder} ({@link Kind#TEXT})
+ * that is only turned into a {@code String} when some other node consumes it.
+ * <p>
+ * Instances keep evaluation state in fields and must not be shared between threads.
+ */
+public class Interpreter implements ExpressionVisitor<Interpreter.Kind> {
+
+    public enum Kind {NUMBER, TEXT, OBJECT}
+
+    private double number;
+    private Object object;
+
+    public void interpret(Expression expression) {
+        try {
+            System.out.println(stringify(evaluate(expression)));
+        } catch (RuntimeError error) {
+            Error.runtimeError(error);
+        }
+    }
+
+    public Object evaluate(Expression expression) {
+        return value(expression.accept(this));
+    }
+
+    @Override
+    public Kind visit(Binary expression) {
+        Token operator = expression.operator();
+        switch (operator.type()) {
+            case COMMA:
+                expression.left().accept(this);
+                return expression.right().accept(this);
+            case PLUS:
+                return plus(expression);
+            case EQUAL_EQUAL:
+                object = isEqual(expression.left(), expression.right());
+                return Kind.OBJECT;
+            case BANG_EQUAL:
+                object = !isEqual(expression.left(), expression.right());
+                return Kind.OBJECT;
+        }
+
+        double left = numberOperand(operator, expression.left(), "Operands must be numbers.");
+        double right = numberOperand(operator, expression.right(), "Operands must be numbers.");
+        switch (operator.type()) {
+            case MINUS:
+                number = left - right;
+                return Kind.NUMBER;
+            case STAR:
+                number = left * right;
+                return Kind.NUMBER;
+            case SLASH:
+                number = left / right;
+                return Kind.NUMBER;
+            case GREATER:
+                object = left > right;
+                return Kind.OBJECT;
+            case GREATER_EQUAL:
+                object = left >= right;
+                return Kind.OBJECT;
+            case LESS:
+                object = left < right;
+                return Kind.OBJECT;
+            case LESS_EQUAL:
+                object = left <= right;
+                return Kind.OBJECT;
+        }
+        throw new RuntimeError(operator, "Unsupported binary operator.");
+    }
+
+    @Override
+    public Kind visit(Literal expression) {
+        if (expression.value() instanceof Double value) {
+            number = value;
+            return Kind.NUMBER;
+        }
+        object = expression.value();
+        return Kind.OBJECT;
+    }
+
+    @Override
+    public Kind visit(Unary expression) {
+        Token operator = expression.operator();
+        switch (operator.type()) {
+            case MINUS:
+                number = -numberOperand(operator, expression.operand(), "Operand must be a number.");
+                return Kind.NUMBER;
+            case BANG:
+                object = !isTruthy(expression.operand().accept(this));
+                return Kind.OBJECT;
+        }
+        throw new RuntimeError(operator, "Unsupported unary operator.");
+    }
+
+    @Override
+    public Kind visit(Grouping expression) {
+        return expression.expression().accept(this);
+    }
+
+    @Override
+    public Kind visit(Ternary expression) {
+        if (isTruthy(expression.left().accept(this))) {
+            return expression.middle().accept(this);
+        }
+        return expression.right().accept(this);
+    }
+
+    // Nothing binds variables yet.
+    @Override
+    public Kind visit(Variable expression) {
+        throw new RuntimeError(expression.name(), "Undefined variable '" + expression.name().lexeme() + "'.");
+    }
+
+    private Kind plus(Binary expression) {
+        Token operator = expression.operator();
+        Kind leftKind = expression.left().accept(this);
+        if (leftKind == Kind.NUMBER) {
+            double left = number;
+            if (expression.right().accept(this) != Kind.NUMBER) {
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+            }
+            number = left + number;
+            return Kind.NUMBER;
+        }
+        if (leftKind == Kind.OBJECT && !(object instanceof String)) {
+            throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+        }
+
+        Object left = object;
+        Kind rightKind = expression.right().accept(this);
+        if (rightKind == Kind.NUMBER || (rightKind == Kind.OBJECT && !(object instanceof String))) {
+            throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+        }
+        CharSequence right = (CharSequence) object;
+        StringBuilder builder;
+        if (leftKind == Kind.TEXT) {
+            builder = (StringBuilder) left;
+        } else {
+            String string = (String) left;
+            builder = new StringBuilder(string.length() + right.length()).append(string);
+        }
+        builder.append(right);
+        object = builder;
+        return Kind.TEXT;
+    }
+
+    private double numberOperand(Token operator, Expression operand, String message) {
+        if (operand.accept(this) != Kind.NUMBER) {
+            throw new RuntimeError(operator, message);
+        }
+        return number;
+    }
+
+    private boolean isEqual(Expression leftExpression, Expression rightExpression) {
+        Kind leftKind = leftExpression.accept(this);
+        double left = number;
+        Object leftObject = leftKind == Kind.NUMBER ? null : value(leftKind);
+        Kind rightKind = rightExpression.accept(this);
+        if (leftKind == Kind.NUMBER || rightKind == Kind.NUMBER) {
+            return leftKind == rightKind && Double.compare(left, number) == 0;
+        }
+        return Objects.equals(leftObject, value(rightKind));
+    }
+
+    private boolean isTruthy(Kind kind) {
+        if (kind != Kind.OBJECT) return true;
+        if (object == null) return false;
+        if (object instanceof Boolean value) return value;
+        return true;
+    }
+
+    private Object value(Kind kind) {
+        switch (kind) {
+            case NUMBER:
+                return number;
+            case TEXT:
+                return object.toString();
+            default:
+                return object;
+        }
+    }
+
+    public static String stringify(Object value) {
+        if (value == null) return "nil";
+        if (value instanceof Double) {
+            String text = value.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+        return value.toString();
+    }
+}
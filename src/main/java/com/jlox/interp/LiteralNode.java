@@ -0,0 +1,85 @@
+package com.jlox.interp;
+
+import com.jlox.scanner.Token;
+
+/**
+ * Constants. Their type never changes, so they are specialised when the tree is built.
+ * Variables, which nothing binds yet, are the constant failure {@link Undefined}.
+ */
+abstract class LiteralNode extends Node {
+
+    static LiteralNode of(Object value) {
+        if (value instanceof Double number) return new NumberLiteral(number);
+        if (value instanceof Boolean bool) return new BooleanLiteral(bool);
+        return new ObjectLiteral(value);
+    }
+
+    @Override
+    void replaceChild(Node child, Node replacement) {
+        throw new IllegalStateException("A literal has no children");
+    }
+
+    static final class NumberLiteral extends LiteralNode {
+        private final double value;
+        private final Double boxed;
+
+        NumberLiteral(Double value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute() {
+            return boxed;
+        }
+
+        @Override
+        double executeNumber() {
+            return value;
+        }
+    }
+
+    static final class BooleanLiteral extends LiteralNode {
+        private final boolean value;
+
+        BooleanLiteral(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+
+        @Override
+        boolean executeBoolean() {
+            return value;
+        }
+    }
+
+    static final class Undefined extends LiteralNode {
+        private final Token name;
+
+        Undefined(Token name) {
+            this.name = name;
+        }
+
+        @Override
+        Object execute() {
+            return Operations.undefined(name);
+        }
+    }
+
+    static final class ObjectLiteral extends LiteralNode {
+        private final Object value;
+
+        ObjectLiteral(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+    }
+}
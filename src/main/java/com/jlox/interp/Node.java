@@ -0,0 +1,96 @@
+package com.jlox.interp;
+
+/**
+ * An executable node of a {@link SpecializingEvaluator} tree. A node may replace itself
+ * with a version specialised for the operand types it has seen, and that version
+ * replaces itself again with a generic one when its assumption fails.
+ * <p>
+ * {@link #executeNumber()} and {@link #executeBoolean()} let a specialised parent ask for
+ * an unboxed result. A node whose value is of another type throws
+ * {@link UnexpectedResult} with the value instead, and the parent deoptimizes.
+ */
+abstract class Node {
+
+    Node parent;
+
+    abstract Object execute();
+
+    double executeNumber() throws UnexpectedResult {
+        Object value = execute();
+        if (value instanceof Double number) return number;
+        throw new UnexpectedResult(value);
+    }
+
+    boolean executeBoolean() throws UnexpectedResult {
+        Object value = execute();
+        if (value instanceof Boolean bool) return bool;
+        throw new UnexpectedResult(value);
+    }
+
+    abstract void replaceChild(Node child, Node replacement);
+
+    <T extends Node> T adopt(T child) {
+        child.parent = this;
+        return child;
+    }
+
+    /**
+     * Puts {@code replacement} where this node is in the tree and returns it.
+     */
+    <T extends Node> T replace(T replacement) {
+        parent.replaceChild(this, parent.adopt(replacement));
+        root().rewrites++;
+        return replacement;
+    }
+
+    /**
+     * Replaces a specialised node whose assumption failed by its generic version.
+     */
+    <T extends Node> T deoptimize(T generic) {
+        root().deoptimizations++;
+        return replace(generic);
+    }
+
+    private Root root() {
+        Node node = this;
+        while (!(node instanceof Root)) node = node.parent;
+        return (Root) node;
+    }
+
+    static boolean isTruthy(Object value) {
+        return Operations.isTruthy(value);
+    }
+
+    static final class Root extends Node {
+        Node body;
+        long rewrites = 0;
+        long deoptimizations = 0;
+
+        Root(Node body) {
+            this.body = adopt(body);
+        }
+
+        @Override
+        Object execute() {
+            return body.execute();
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            body = replacement;
+        }
+    }
+
+    /**
+     * A value of another type than the caller asked for. Thrown on the slow path only, so
+     * it carries no stack trace.
+     */
+    static final class UnexpectedResult extends Exception {
+        final Object result;
+
+        UnexpectedResult(Object result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+}
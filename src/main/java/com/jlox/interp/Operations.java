@@ -0,0 +1,95 @@
+package com.jlox.interp;
+
+import com.jlox.error.RuntimeError;
+import com.jlox.scanner.Token;
+
+import java.util.Objects;
+
+/**
+ * The operators on boxed values, with the semantics and errors of {@link Interpreter},
+ * for the evaluators that do not walk the tree themselves.
+ */
+final class Operations {
+
+    private Operations() {
+    }
+
+    /**
+     * Fails the way the interpreter does when the left operand alone rules the operation
+     * out, before the right one is evaluated; otherwise returns it.
+     */
+    static Object checkLeft(Token operator, Object left) {
+        switch (operator.type()) {
+            case PLUS:
+                if (left instanceof Double || left instanceof String) return left;
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+            case MINUS:
+            case STAR:
+            case SLASH:
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                if (left instanceof Double) return left;
+                throw new RuntimeError(operator, "Operands must be numbers.");
+            default:
+                return left;
+        }
+    }
+
+    static Object binary(Token operator, Object left, Object right) {
+        switch (operator.type()) {
+            case COMMA:
+                return right;
+            case EQUAL_EQUAL:
+                return Objects.equals(left, right);
+            case BANG_EQUAL:
+                return !Objects.equals(left, right);
+            case PLUS:
+                if (left instanceof Double a && right instanceof Double b) return a + b;
+                if (left instanceof String a && right instanceof String b) return a.concat(b);
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+        }
+        if (!(left instanceof Double a) || !(right instanceof Double b)) {
+            throw new RuntimeError(operator, "Operands must be numbers.");
+        }
+        switch (operator.type()) {
+            case MINUS:
+                return a - b;
+            case STAR:
+                return a * b;
+            case SLASH:
+                return a / b;
+            case GREATER:
+                return a > b;
+            case GREATER_EQUAL:
+                return a >= b;
+            case LESS:
+                return a < b;
+            case LESS_EQUAL:
+                return a <= b;
+        }
+        throw new RuntimeError(operator, "Unsupported binary operator.");
+    }
+
+    static Object unary(Token operator, Object operand) {
+        switch (operator.type()) {
+            case MINUS:
+                if (operand instanceof Double number) return -number;
+                throw new RuntimeError(operator, "Operand must be a number.");
+            case BANG:
+                return !isTruthy(operand);
+        }
+        throw new RuntimeError(operator, "Unsupported unary operator.");
+    }
+
+    static Object undefined(Token name) {
+        throw new RuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+    }
+
+    static boolean isTruthy(Object value) {
+        if (value == null) return false;
+        if (value instanceof Boolean bool) return bool;
+        return true;
+    }
+}
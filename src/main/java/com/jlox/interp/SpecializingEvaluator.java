@@ -0,0 +1,113 @@
+package com.jlox.interp;
+
+import com.jlox.error.Error;
+import com.jlox.error.RuntimeError;
+import com.jlox.parser.*;
+
+/**
+ * Evaluator over a tree of self-specialising nodes built from an expression. Each
+ * operator node rewrites itself on its first execution into a version for the operand
+ * types it saw, such as number addition or string concatenation, which takes its
+ * operands unboxed and skips the type dispatch of {@link Interpreter}. If a later
+ * execution sees other types the node deoptimizes to a generic version for good.
+ * <p>
+ * Build one evaluator per expression and evaluate it as often as needed; the
+ * specialisations carry over between evaluations. Results and errors are those of
+ * {@link Interpreter}. Instances rewrite themselves and must not be shared between
+ * threads.
+ */
+public class SpecializingEvaluator {
+
+    private final Node.Root root;
+
+    public SpecializingEvaluator(Expression expression) {
+        root = new Node.Root(expression.accept(new Builder()));
+    }
+
+    public Object evaluate() {
+        return root.execute();
+    }
+
+    public void interpret() {
+        try {
+            System.out.println(Interpreter.stringify(evaluate()));
+        } catch (RuntimeError error) {
+            Error.runtimeError(error);
+        }
+    }
+
+    /**
+     * Nodes replaced so far, by a specialisation or a generic version.
+     */
+    public long rewrites() {
+        return root.rewrites;
+    }
+
+    /**
+     * Specialisations given up so far because their operands changed type.
+     */
+    public long deoptimizations() {
+        return root.deoptimizations;
+    }
+
+    /**
+     * The current node tree as an s-expression of node class names, for diagnostics.
+     */
+    public String shape() {
+        StringBuilder out = new StringBuilder();
+        shape(root.body, out);
+        return out.toString();
+    }
+
+    private static void shape(Node node, StringBuilder out) {
+        String name = node.getClass().getName();
+        out.append('(').append(name.substring(name.lastIndexOf('.') + 1));
+        if (node instanceof BinaryNode binary) {
+            shape(binary.left, out.append(' '));
+            shape(binary.right, out.append(' '));
+        } else if (node instanceof UnaryNode unary) {
+            shape(unary.operand, out.append(' '));
+        } else if (node instanceof TernaryNode ternary) {
+            shape(ternary.condition, out.append(' '));
+            shape(ternary.then, out.append(' '));
+            shape(ternary.otherwise, out.append(' '));
+        }
+        out.append(')');
+    }
+
+    // Groupings only matter to the parser and get no node.
+    private static final class Builder implements ExpressionVisitor<Node> {
+
+        @Override
+        public Node visit(Binary expression) {
+            return BinaryNode.of(expression.operator(),
+                    expression.left().accept(this), expression.right().accept(this));
+        }
+
+        @Override
+        public Node visit(Literal expression) {
+            return LiteralNode.of(expression.value());
+        }
+
+        @Override
+        public Node visit(Unary expression) {
+            return UnaryNode.of(expression.operator(), expression.operand().accept(this));
+        }
+
+        @Override
+        public Node visit(Grouping expression) {
+            return expression.expression().accept(this);
+        }
+
+        @Override
+        public Node visit(Variable expression) {
+            return new LiteralNode.Undefined(expression.name());
+        }
+
+        @Override
+        public Node visit(Ternary expression) {
+            return TernaryNode.of(expression.left().accept(this),
+                    expression.middle().accept(this), expression.right().accept(this));
+        }
+    }
+}
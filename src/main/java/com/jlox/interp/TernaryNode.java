@@ -0,0 +1,92 @@
+package com.jlox.interp;
+
+/**
+ * The conditional operator. Specialised on a boolean condition, which it then reads
+ * unboxed; either way it passes unboxed requests on to the branch it takes.
+ */
+abstract class TernaryNode extends Node {
+
+    Node condition;
+    Node then;
+    Node otherwise;
+
+    TernaryNode(Node condition, Node then, Node otherwise) {
+        this.condition = adopt(condition);
+        this.then = adopt(then);
+        this.otherwise = adopt(otherwise);
+    }
+
+    static TernaryNode of(Node condition, Node then, Node otherwise) {
+        return new Uninitialized(condition, then, otherwise);
+    }
+
+    @Override
+    void replaceChild(Node child, Node replacement) {
+        if (condition == child) condition = replacement;
+        if (then == child) then = replacement;
+        if (otherwise == child) otherwise = replacement;
+    }
+
+    abstract Node branch();
+
+    @Override
+    Object execute() {
+        return branch().execute();
+    }
+
+    @Override
+    double executeNumber() throws UnexpectedResult {
+        return branch().executeNumber();
+    }
+
+    @Override
+    boolean executeBoolean() throws UnexpectedResult {
+        return branch().executeBoolean();
+    }
+
+    static final class Uninitialized extends TernaryNode {
+
+        Uninitialized(Node condition, Node then, Node otherwise) {
+            super(condition, then, otherwise);
+        }
+
+        @Override
+        Node branch() {
+            Object value = condition.execute();
+            TernaryNode specialized = value instanceof Boolean
+                    ? new BooleanCondition(condition, then, otherwise)
+                    : new Generic(condition, then, otherwise);
+            replace(specialized);
+            return isTruthy(value) ? specialized.then : specialized.otherwise;
+        }
+    }
+
+    static final class Generic extends TernaryNode {
+
+        Generic(Node condition, Node then, Node otherwise) {
+            super(condition, then, otherwise);
+        }
+
+        @Override
+        Node branch() {
+            return isTruthy(condition.execute()) ? then : otherwise;
+        }
+    }
+
+    static final class BooleanCondition extends TernaryNode {
+
+        BooleanCondition(Node condition, Node then, Node otherwise) {
+            super(condition, then, otherwise);
+        }
+
+        @Override
+        Node branch() {
+            try {
+                return condition.executeBoolean() ? then : otherwise;
+            } catch (UnexpectedResult e) {
+                Generic generic = deoptimize(new Generic(condition, then, otherwise));
+                return isTruthy(e.result) ? generic.then : generic.otherwise;
+            }
+        }
+    }
+}
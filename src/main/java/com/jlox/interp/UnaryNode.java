@@ -0,0 +1,124 @@
+package com.jlox.interp;
+
+import com.jlox.scanner.Token;
+
+/**
+ * Unary operators, specialised like {@link BinaryNode}: "-" on a number and "!" on a
+ * boolean read their operand unboxed.
+ */
+abstract class UnaryNode extends Node {
+
+    final Token operator;
+    Node operand;
+
+    UnaryNode(Token operator, Node operand) {
+        this.operator = operator;
+        this.operand = adopt(operand);
+    }
+
+    static UnaryNode of(Token operator, Node operand) {
+        return new Uninitialized(operator, operand);
+    }
+
+    @Override
+    void replaceChild(Node child, Node replacement) {
+        if (operand == child) operand = replacement;
+    }
+
+    Generic generic() {
+        return deoptimize(new Generic(operator, operand));
+    }
+
+    Object apply(Object value) {
+        return Operations.unary(operator, value);
+    }
+
+    static final class Uninitialized extends UnaryNode {
+
+        Uninitialized(Token operator, Node operand) {
+            super(operator, operand);
+        }
+
+        @Override
+        Object execute() {
+            Object value = operand.execute();
+            switch (operator.type()) {
+                case MINUS:
+                    if (value instanceof Double) {
+                        replace(new Negate(operator, operand));
+                        return apply(value);
+                    }
+                    break;
+                case BANG:
+                    if (value instanceof Boolean) {
+                        replace(new Not(operator, operand));
+                        return apply(value);
+                    }
+                    break;
+            }
+            return replace(new Generic(operator, operand)).apply(value);
+        }
+    }
+
+    static final class Generic extends UnaryNode {
+
+        Generic(Token operator, Node operand) {
+            super(operator, operand);
+        }
+
+        @Override
+        Object execute() {
+            return apply(operand.execute());
+        }
+    }
+
+    static final class Negate extends UnaryNode {
+
+        Negate(Token operator, Node operand) {
+            super(operator, operand);
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeNumber();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            try {
+                return -operand.executeNumber();
+            } catch (UnexpectedResult e) {
+                return BinaryNode.number(generic().apply(e.result));
+            }
+        }
+    }
+
+    static final class Not extends UnaryNode {
+
+        Not(Token operator, Node operand) {
+            super(operator, operand);
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeBoolean();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            try {
+                return !operand.executeBoolean();
+            } catch (UnexpectedResult e) {
+                return BinaryNode.bool(generic().apply(e.result));
+            }
+        }
+    }
+}
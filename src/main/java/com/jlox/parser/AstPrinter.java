@@ -1,47 +1,112 @@
 package com.jlox.parser;
 
-public class AstPrinter implements ExpressionVisitor<String> {
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Prints the tree in prefix form, e.g. {@code (+ 1.0 (group 2.0))}.
+ * <p>
+ * Output is written once, in order, into the caller's {@link Appendable}. The tree is
+ * walked with an explicit stack of pending work (nodes still to print and the text that
+ * goes between them), so printing is linear in the size of the tree and does not recurse
+ * on the Java stack.
+ */
+public class AstPrinter implements ExpressionVisitor<Void> {
+
+    private final Deque<Object> pending = new ArrayDeque<>();
+    private Appendable out;
 
     public String print(Expression expression) {
-        return expression.accept(this);
+        StringBuilder string = new StringBuilder();
+        try {
+            print(expression, string);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return string.toString();
+    }
+
+    public void print(Expression expression, Appendable out) throws IOException {
+        this.out = out;
+        pending.clear();
+        pending.push(expression);
+        try {
+            while (!pending.isEmpty()) {
+                Object next = pending.pop();
+                if (next instanceof Expression node) {
+                    node.accept(this);
+                } else {
+                    emit((String) next);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.out = null;
+        }
     }
 
     @Override
-    public String visit(Binary expression) {
-        return parenthesize(expression.operator().lexeme(),
+    public Void visit(Binary expression) {
+        parenthesize(expression.operator().lexeme(),
                 expression.left(), expression.right());
+        return null;
     }
 
     @Override
-    public String visit(Literal expression) {
-        if (expression.value() == null) return "nil";
-        return expression.value().toString();
+    public Void visit(Literal expression) {
+        if (expression.value() == null) {
+            emit("nil");
+        } else {
+            emit(expression.value().toString());
+        }
+        return null;
     }
 
     @Override
-    public String visit(Unary expression) {
-        return parenthesize(expression.operator().lexeme(),
+    public Void visit(Variable expression) {
+        emit(expression.name().lexeme());
+        return null;
+    }
+
+    @Override
+    public Void visit(Unary expression) {
+        parenthesize(expression.operator().lexeme(),
                 expression.operand());
+        return null;
     }
 
-    public String visit(Grouping expression) {
-        return parenthesize("group", expression.expression());
+    @Override
+    public Void visit(Grouping expression) {
+        parenthesize("group", expression.expression());
+        return null;
     }
 
     @Override
-    public String visit(Ternary expression) {
-        return parenthesize("?:",
+    public Void visit(Ternary expression) {
+        parenthesize("?:",
                 expression.left(), expression.middle(), expression.right());
+        return null;
     }
 
+    // Writes "(name" now and schedules " child" for each operand, then ")".
+    private void parenthesize(String name, Expression... expressions) {
+        emit("(");
+        emit(name);
+        pending.push(")");
+        for (int i = expressions.length - 1; i >= 0; i--) {
+            pending.push(expressions[i]);
+            pending.push(" ");
+        }
+    }
 
-    public String parenthesize(String name, Expression... expressions) {
-        StringBuilder string = new StringBuilder();
-        string.append("(").append(name);
-        for (Expression expression : expressions) {
-            string.append(" ").append(expression.accept(this));
+    private void emit(String text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        string.append(")");
-        return string.toString();
     }
 }
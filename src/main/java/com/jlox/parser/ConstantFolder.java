@@ -0,0 +1,209 @@
+package com.jlox.parser;
+
+import com.jlox.error.RuntimeError;
+import com.jlox.interp.Interpreter;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static com.jlox.scanner.Token.TokenType.COMMA;
+
+/**
+ * Folds constant subtrees into {@link Literal}s ahead of printing or evaluation.
+ * <p>
+ * Constant operators are computed with the {@link Interpreter} so folding can never
+ * disagree with evaluation; an operation that would fail at runtime is left in place
+ * so the error is still reported, with its line, when the expression runs.
+ * {@link Grouping}s only matter to the parser and are dropped. Unchanged subtrees are
+ * returned as-is instead of being copied.
+ * <p>
+ * Given a {@link ResultCache}, subtrees it has seen fold to their cached literal without
+ * being walked, and the subtrees folded here are added to it.
+ * <p>
+ * The tree is walked with an explicit stack of frames, so a tree of any depth folds
+ * without recursion. Each visit is one step of its node: it either schedules the next
+ * child and returns null, or takes the folded children off the result stack and returns
+ * the node's own result.
+ */
+public class ConstantFolder implements ExpressionVisitor<Expression> {
+
+    private final Interpreter interpreter = new Interpreter();
+    private final ResultCache results;
+    private Map<Expression, ResultCache.Key> keys;
+
+    private Expression[] frames = new Expression[16];
+    private int[] steps = new int[16];
+    private int depth = 0;
+    private int current;
+    private Expression[] folded = new Expression[16];
+    private int foldedCount = 0;
+
+    public ConstantFolder() {
+        this(null);
+    }
+
+    public ConstantFolder(ResultCache results) {
+        this.results = results;
+    }
+
+    public Expression fold(Expression expression) {
+        keys = results == null ? null : results.keys(expression);
+        depth = 0;
+        foldedCount = 0;
+        schedule(expression);
+        try {
+            while (depth > 0) {
+                current = depth - 1;
+                Expression node = frames[current];
+                // Every node goes through here, so nested subtrees are looked up too.
+                if (steps[current]++ == 0 && keys != null) {
+                    ResultCache.Key key = keys.get(node);
+                    Literal cached = key == null ? null : results.get(key);
+                    if (cached != null) {
+                        finish(cached, null);
+                        continue;
+                    }
+                }
+                Expression result = node.accept(this);
+                if (result != null) finish(result, keys == null ? null : keys.get(node));
+            }
+            return folded[--foldedCount];
+        } finally {
+            keys = null;
+            Arrays.fill(frames, 0, frames.length, null);
+            Arrays.fill(folded, 0, folded.length, null);
+        }
+    }
+
+    private int step() {
+        return steps[current] - 1;
+    }
+
+    private void schedule(Expression expression) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+            steps = Arrays.copyOf(steps, depth * 2);
+        }
+        frames[depth] = expression;
+        steps[depth] = 0;
+        depth++;
+    }
+
+    private void finish(Expression result, ResultCache.Key key) {
+        depth--;
+        frames[depth] = null;
+        if (key != null && result instanceof Literal literal) results.put(key, literal);
+        if (foldedCount == folded.length) folded = Arrays.copyOf(folded, foldedCount * 2);
+        folded[foldedCount++] = result;
+    }
+
+    private Expression pop() {
+        Expression result = folded[--foldedCount];
+        folded[foldedCount] = null;
+        return result;
+    }
+
+    @Override
+    public Expression visit(Binary expression) {
+        switch (step()) {
+            case 0:
+                schedule(expression.left());
+                return null;
+            case 1:
+                schedule(expression.right());
+                return null;
+        }
+        Expression right = pop();
+        Expression left = pop();
+        if (left instanceof Literal && expression.operator().type() == COMMA) {
+            return right;
+        }
+        Binary binary = left == expression.left() && right == expression.right()
+                ? expression
+                : new Binary(left, expression.operator(), right);
+        if (left instanceof Literal && right instanceof Literal) {
+            Expression folded = evaluate(binary);
+            if (folded != null) return folded;
+        }
+        return binary;
+    }
+
+    @Override
+    public Expression visit(Literal expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(Variable expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(Unary expression) {
+        if (step() == 0) {
+            schedule(expression.operand());
+            return null;
+        }
+        Expression operand = pop();
+        Unary unary = operand == expression.operand() ? expression : new Unary(expression.operator(), operand);
+        if (operand instanceof Literal) {
+            Expression folded = evaluate(unary);
+            if (folded != null) return folded;
+        }
+        return unary;
+    }
+
+    @Override
+    public Expression visit(Grouping expression) {
+        if (step() == 0) {
+            schedule(expression.expression());
+            return null;
+        }
+        return pop();
+    }
+
+    @Override
+    public Expression visit(Ternary expression) {
+        switch (step()) {
+            case 0:
+                schedule(expression.left());
+                return null;
+            case 1:
+                if (folded[foldedCount - 1] instanceof Literal literal) {
+                    // Only the branch taken is folded, and its result is the ternary's.
+                    pop();
+                    steps[current] = 4;
+                    schedule(isTruthy(literal.value()) ? expression.middle() : expression.right());
+                    return null;
+                }
+                schedule(expression.middle());
+                return null;
+            case 2:
+                schedule(expression.right());
+                return null;
+            case 4:
+                return pop();
+        }
+        Expression right = pop();
+        Expression middle = pop();
+        Expression condition = pop();
+        if (condition == expression.left() && middle == expression.middle() && right == expression.right()) {
+            return expression;
+        }
+        return new Ternary(condition, middle, right);
+    }
+
+    private Expression evaluate(Expression expression) {
+        try {
+            return new Literal(interpreter.evaluate(expression));
+        } catch (RuntimeError error) {
+            return null;
+        }
+    }
+
+    private static boolean isTruthy(Object value) {
+        if (value == null) return false;
+        if (value instanceof Boolean bool) return bool;
+        return true;
+    }
+}
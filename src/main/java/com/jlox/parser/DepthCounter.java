@@ -0,0 +1,79 @@
+package com.jlox.parser;
+
+import java.util.Arrays;
+
+/**
+ * The number of nodes on the longest path from the root to a leaf. Each visit schedules
+ * the children one level below its own on an explicit stack, so a tree of any depth is
+ * measured without recursion.
+ */
+public class DepthCounter implements ExpressionVisitor<Void> {
+
+    private Expression[] pending = new Expression[16];
+    private int[] depths = new int[16];
+    private int count = 0;
+    private int depth;
+
+    public int depth(Expression expression) {
+        count = 0;
+        depth = 0;
+        push(expression);
+        int max = 0;
+        while (count > 0) {
+            count--;
+            Expression node = pending[count];
+            pending[count] = null;
+            depth = depths[count];
+            max = Math.max(max, depth);
+            node.accept(this);
+        }
+        return max;
+    }
+
+    private void push(Expression expression) {
+        if (count == pending.length) {
+            pending = Arrays.copyOf(pending, count * 2);
+            depths = Arrays.copyOf(depths, count * 2);
+        }
+        pending[count] = expression;
+        depths[count] = depth + 1;
+        count++;
+    }
+
+    @Override
+    public Void visit(Binary expression) {
+        push(expression.left());
+        push(expression.right());
+        return null;
+    }
+
+    @Override
+    public Void visit(Literal expression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Unary expression) {
+        push(expression.operand());
+        return null;
+    }
+
+    @Override
+    public Void visit(Grouping expression) {
+        push(expression.expression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ternary expression) {
+        push(expression.left());
+        push(expression.middle());
+        push(expression.right());
+        return null;
+    }
+
+    @Override
+    public Void visit(Variable expression) {
+        return null;
+    }
+}
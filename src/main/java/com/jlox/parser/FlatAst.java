@@ -0,0 +1,358 @@
+package com.jlox.parser;
+
+import com.jlox.scanner.Token;
+import com.jlox.scanner.Token.TokenType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Expression tree stored as parallel arrays instead of linked records.
+ * <p>
+ * A node is an index. Per node there is a kind, an operator ordinal, the operator's line
+ * and up to three child indices; the first slot of a literal or a variable indexes the
+ * side table of literal values and variable names instead. That is 18 bytes per node
+ * and, apart from the literal values, no objects for the garbage collector to trace.
+ * Nodes are stored in postorder, so every child comes before its parent and the root is
+ * the last node: a bottom-up pass over the tree is a plain loop over the indices (see
+ * {@link #walk}).
+ * <p>
+ * Build one with a {@link FlatAstBuilder}, from {@link ParserBase#parseFlat()} or
+ * {@link #of(Expression)}, and convert back with {@link #toExpression()} for consumers of
+ * the record tree. {@link #write} and {@link #read} give it a compact binary form.
+ */
+public class FlatAst {
+
+    public static final byte LITERAL = 0;
+    public static final byte UNARY = 1;
+    public static final byte BINARY = 2;
+    public static final byte GROUPING = 3;
+    public static final byte TERNARY = 4;
+    public static final byte VARIABLE = 5;
+
+    // Literal tags of the binary form.
+    private static final byte NIL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte NUMBER = 3;
+    private static final byte STRING = 4;
+
+    private static final TokenType[] types = TokenType.values();
+    private static final String[] lexemes = new String[types.length];
+
+    static {
+        lexemes[TokenType.MINUS.ordinal()] = "-";
+        lexemes[TokenType.PLUS.ordinal()] = "+";
+        lexemes[TokenType.SLASH.ordinal()] = "/";
+        lexemes[TokenType.STAR.ordinal()] = "*";
+        lexemes[TokenType.COMMA.ordinal()] = ",";
+        lexemes[TokenType.BANG.ordinal()] = "!";
+        lexemes[TokenType.BANG_EQUAL.ordinal()] = "!=";
+        lexemes[TokenType.EQUAL_EQUAL.ordinal()] = "==";
+        lexemes[TokenType.GREATER.ordinal()] = ">";
+        lexemes[TokenType.GREATER_EQUAL.ordinal()] = ">=";
+        lexemes[TokenType.LESS.ordinal()] = "<";
+        lexemes[TokenType.LESS_EQUAL.ordinal()] = "<=";
+    }
+
+    private final byte[] kinds;
+    private final byte[] operators;
+    private final int[] lines;
+    private final int[] first;
+    private final int[] second;
+    private final int[] third;
+    private final int size;
+    private final Object[] literals;
+    private final int root;
+
+    FlatAst(byte[] kinds, byte[] operators, int[] lines, int[] first, int[] second,
+            int[] third, int size, Object[] literals, int root) {
+        this.kinds = kinds;
+        this.operators = operators;
+        this.lines = lines;
+        this.first = first;
+        this.second = second;
+        this.third = third;
+        this.size = size;
+        this.literals = literals;
+        this.root = root;
+    }
+
+    public static FlatAst of(Expression expression) {
+        FlatAstBuilder builder = new FlatAstBuilder();
+        builder.append(expression);
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return root;
+    }
+
+    public byte kind(int node) {
+        return kinds[node];
+    }
+
+    public TokenType operatorType(int node) {
+        return operators[node] < 0 ? null : types[operators[node]];
+    }
+
+    /**
+     * The operator of a unary or binary node as the parser saw it, or null.
+     */
+    public Token operator(int node) {
+        if (operators[node] < 0) return null;
+        return new Token(types[operators[node]], lexemes[operators[node]], null, lines[node]);
+    }
+
+    public int line(int node) {
+        return lines[node];
+    }
+
+    public Object literal(int node) {
+        return literals[first[node]];
+    }
+
+    /**
+     * The name of a variable node as the token the parser saw.
+     */
+    public Token name(int node) {
+        String name = (String) literals[first[node]];
+        return new Token(TokenType.IDENTIFIER, name, name, lines[node]);
+    }
+
+    // Binary: left; unary: operand; grouping: expression; ternary: condition.
+    public int left(int node) {
+        return first[node];
+    }
+
+    // Binary: right; ternary: then branch.
+    public int middle(int node) {
+        return second[node];
+    }
+
+    public int right(int node) {
+        return kinds[node] == BINARY ? second[node] : third[node];
+    }
+
+    public <R> R accept(int node, FlatAstVisitor<R> visitor) {
+        switch (kinds[node]) {
+            case LITERAL:
+                return visitor.visitLiteral(node);
+            case UNARY:
+                return visitor.visitUnary(node);
+            case BINARY:
+                return visitor.visitBinary(node);
+            case GROUPING:
+                return visitor.visitGrouping(node);
+            case VARIABLE:
+                return visitor.visitVariable(node);
+            default:
+                return visitor.visitTernary(node);
+        }
+    }
+
+    /**
+     * Visits every node children first, without recursion.
+     */
+    public void walk(FlatAstVisitor<?> visitor) {
+        for (int node = 0; node < size; node++) {
+            accept(node, visitor);
+        }
+    }
+
+    public Expression toExpression() {
+        Expression[] built = new Expression[size];
+        walk(new FlatAstVisitor<Void>() {
+            @Override
+            public Void visitBinary(int node) {
+                built[node] = new Binary(built[left(node)], operator(node), built[right(node)]);
+                return null;
+            }
+
+            @Override
+            public Void visitLiteral(int node) {
+                built[node] = new Literal(literal(node));
+                return null;
+            }
+
+            @Override
+            public Void visitUnary(int node) {
+                built[node] = new Unary(operator(node), built[left(node)]);
+                return null;
+            }
+
+            @Override
+            public Void visitGrouping(int node) {
+                built[node] = new Grouping(built[left(node)]);
+                return null;
+            }
+
+            @Override
+            public Void visitTernary(int node) {
+                built[node] = new Ternary(built[left(node)], built[middle(node)], built[right(node)]);
+                return null;
+            }
+
+            @Override
+            public Void visitVariable(int node) {
+                built[node] = new Variable(name(node));
+                return null;
+            }
+        });
+        return built[root];
+    }
+
+    /**
+     * Writes the nodes in postorder, one kind byte each followed by the operator and line
+     * of unary and binary nodes, the tagged value of literals or the name and line of
+     * variables. Child indices are not stored: reading the nodes back in order rebuilds
+     * them, like the parser does.
+     */
+    public void write(DataOutput out) throws IOException {
+        writeVarInt(out, size);
+        for (int node = 0; node < size; node++) {
+            out.writeByte(kinds[node]);
+            switch (kinds[node]) {
+                case UNARY:
+                case BINARY:
+                    out.writeByte(operators[node]);
+                    writeVarInt(out, lines[node]);
+                    break;
+                case LITERAL:
+                    writeLiteral(out, literals[first[node]]);
+                    break;
+                case VARIABLE:
+                    writeString(out, (String) literals[first[node]]);
+                    writeVarInt(out, lines[node]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads a tree written by {@link #write} from at most {@code limit} bytes. Every count
+     * and length read is checked against the limit before anything is allocated for it,
+     * so a corrupt input fails with an {@link IOException} rather than running out of
+     * memory.
+     */
+    public static FlatAst read(DataInput in, long limit) throws IOException {
+        // Every node takes at least one byte.
+        int size = length(readVarInt(in), limit);
+        FlatAstBuilder builder = new FlatAstBuilder();
+        try {
+            for (int node = 0; node < size; node++) {
+                byte kind = in.readByte();
+                switch (kind) {
+                    case LITERAL:
+                        builder.literal(readLiteral(in, limit));
+                        break;
+                    case UNARY:
+                        builder.unary(operator(in), readVarInt(in));
+                        break;
+                    case BINARY:
+                        builder.binary(operator(in), readVarInt(in));
+                        break;
+                    case GROUPING:
+                        builder.grouping();
+                        break;
+                    case TERNARY:
+                        builder.ternary();
+                        break;
+                    case VARIABLE:
+                        builder.variable(readString(in, limit), readVarInt(in));
+                        break;
+                    default:
+                        throw new IOException("Unknown node kind " + kind);
+                }
+            }
+            return builder.build();
+        } catch (IllegalStateException e) {
+            throw new IOException("Malformed tree: " + e.getMessage());
+        }
+    }
+
+    private static int operator(DataInput in) throws IOException {
+        int operator = in.readUnsignedByte();
+        if (operator >= types.length || lexemes[operator] == null) {
+            throw new IOException("Unknown operator " + operator);
+        }
+        return operator;
+    }
+
+    private static void writeLiteral(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NIL);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(bool ? TRUE : FALSE);
+        } else if (value instanceof Double number) {
+            out.writeByte(NUMBER);
+            out.writeDouble(number);
+        } else if (value instanceof String string) {
+            out.writeByte(STRING);
+            writeString(out, string);
+        } else {
+            throw new IOException("Cannot write literal of type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readLiteral(DataInput in, long limit) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NIL:
+                return null;
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case NUMBER:
+                return in.readDouble();
+            case STRING:
+                return readString(in, limit);
+            default:
+                throw new IOException("Unknown literal tag " + tag);
+        }
+    }
+
+    private static void writeString(DataOutput out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in, long limit) throws IOException {
+        byte[] bytes = new byte[length(readVarInt(in), limit)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int length(int length, long limit) throws IOException {
+        if (length < 0 || length > limit) {
+            throw new IOException("Length " + length + " in at most " + limit + " bytes");
+        }
+        return length;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
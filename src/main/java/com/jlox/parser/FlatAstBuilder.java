@@ -0,0 +1,180 @@
+package com.jlox.parser;
+
+import com.jlox.scanner.Token;
+
+import java.util.Arrays;
+
+/**
+ * Appends nodes to a {@link FlatAst} in postorder, the order a parser completes them in.
+ * <p>
+ * Every method adds one node and leaves its index on an operand stack; the operators take
+ * their children from the top of that stack, so a parser only has to say which node it
+ * just finished. {@link #build()} expects exactly one node, the root, to be left.
+ */
+public class FlatAstBuilder {
+
+    private byte[] kinds = new byte[64];
+    private byte[] operators = new byte[64];
+    private int[] lines = new int[64];
+    private int[] first = new int[64];
+    private int[] second = new int[64];
+    private int[] third = new int[64];
+    private int size = 0;
+
+    private Object[] literals = new Object[16];
+    private int literalCount = 0;
+
+    private int[] operands = new int[16];
+    private int operandCount = 0;
+
+    public void literal(Object value) {
+        if (literalCount == literals.length) {
+            literals = Arrays.copyOf(literals, literalCount * 2);
+        }
+        literals[literalCount] = value;
+        push(add(FlatAst.LITERAL, -1, 0, literalCount++, -1, -1));
+    }
+
+    public void variable(Token name) {
+        variable(name.lexeme(), name.line());
+    }
+
+    void variable(String name, int line) {
+        if (literalCount == literals.length) {
+            literals = Arrays.copyOf(literals, literalCount * 2);
+        }
+        literals[literalCount] = name;
+        push(add(FlatAst.VARIABLE, -1, line, literalCount++, -1, -1));
+    }
+
+    public void unary(Token operator) {
+        unary(operator.type().ordinal(), operator.line());
+    }
+
+    void unary(int operator, int line) {
+        int operand = pop();
+        push(add(FlatAst.UNARY, operator, line, operand, -1, -1));
+    }
+
+    public void binary(Token operator) {
+        binary(operator.type().ordinal(), operator.line());
+    }
+
+    void binary(int operator, int line) {
+        int right = pop();
+        int left = pop();
+        push(add(FlatAst.BINARY, operator, line, left, right, -1));
+    }
+
+    public void grouping() {
+        int expression = pop();
+        push(add(FlatAst.GROUPING, -1, 0, expression, -1, -1));
+    }
+
+    public void ternary() {
+        int right = pop();
+        int middle = pop();
+        int left = pop();
+        push(add(FlatAst.TERNARY, -1, 0, left, middle, right));
+    }
+
+    /**
+     * Encodes a record tree. Walks it with an explicit stack, so depth is not limited by
+     * the Java stack.
+     */
+    public void append(Expression expression) {
+        // A node is pushed once to schedule its children and once more, marked as
+        // expanded, to be emitted after them.
+        Expression[] pending = new Expression[16];
+        boolean[] expanded = new boolean[16];
+        int count = 0;
+        pending[count++] = expression;
+        while (count > 0) {
+            Expression next = pending[--count];
+            if (expanded[count]) {
+                expanded[count] = false;
+                if (next instanceof Binary binary) {
+                    binary(binary.operator());
+                } else if (next instanceof Unary unary) {
+                    unary(unary.operator());
+                } else if (next instanceof Grouping) {
+                    grouping();
+                } else {
+                    ternary();
+                }
+                continue;
+            }
+            if (next instanceof Literal literal) {
+                literal(literal.value());
+                continue;
+            }
+            if (next instanceof Variable variable) {
+                variable(variable.name());
+                continue;
+            }
+            Expression a = null, b = null, c = null;
+            if (next instanceof Binary binary) {
+                a = binary.left();
+                b = binary.right();
+            } else if (next instanceof Unary unary) {
+                a = unary.operand();
+            } else if (next instanceof Grouping grouping) {
+                a = grouping.expression();
+            } else if (next instanceof Ternary ternary) {
+                a = ternary.left();
+                b = ternary.middle();
+                c = ternary.right();
+            } else {
+                throw new IllegalArgumentException("Cannot encode " + next);
+            }
+            if (count + 4 > pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+                expanded = Arrays.copyOf(expanded, expanded.length * 2);
+            }
+            expanded[count] = true;
+            pending[count++] = next;
+            if (c != null) pending[count++] = c;
+            if (b != null) pending[count++] = b;
+            pending[count++] = a;
+        }
+    }
+
+    public FlatAst build() {
+        if (operandCount != 1) {
+            throw new IllegalStateException("Expected one root node, found " + operandCount);
+        }
+        return new FlatAst(kinds, operators, lines, first, second, third, size,
+                Arrays.copyOf(literals, literalCount), operands[0]);
+    }
+
+    private int add(byte kind, int operator, int line, int a, int b, int c) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            operators = Arrays.copyOf(operators, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            first = Arrays.copyOf(first, capacity);
+            second = Arrays.copyOf(second, capacity);
+            third = Arrays.copyOf(third, capacity);
+        }
+        kinds[size] = kind;
+        operators[size] = (byte) operator;
+        lines[size] = line;
+        first[size] = a;
+        second[size] = b;
+        third[size] = c;
+        return size++;
+    }
+
+    private void push(int node) {
+        if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operandCount * 2);
+        }
+        operands[operandCount++] = node;
+    }
+
+    private int pop() {
+        if (operandCount == 0) throw new IllegalStateException("Missing operand");
+        return operands[--operandCount];
+    }
+}
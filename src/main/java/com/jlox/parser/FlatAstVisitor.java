@@ -0,0 +1,21 @@
+package com.jlox.parser;
+
+/**
+ * Visitor over the nodes of a {@link FlatAst}. Nodes are passed by index; the tree they
+ * belong to gives access to their operator, literal and children.
+ */
+public interface FlatAstVisitor<R> {
+
+    public R visitBinary(int node);
+
+    public R visitLiteral(int node);
+
+    public R visitUnary(int node);
+
+    public R visitGrouping(int node);
+
+    public R visitTernary(int node);
+
+    public R visitVariable(int node);
+
+}
@@ -0,0 +1,338 @@
+package com.jlox.parser;
+
+import com.jlox.scanner.Token;
+import com.jlox.scanner.TokenEdit;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Parenthesized groups of a parse, sorted by the token index of their "(": parallel
+ * arrays of that index, the index after the matching ")", the line of the "(" and the
+ * group's tree. The table is kept across edits and changed in place.
+ * <p>
+ * Like a {@link com.jlox.scanner.TokenBuffer} the arrays have a gap at the last edit.
+ * Groups after it sit at the end of the arrays with their token indices stored relative
+ * to {@code tailShift}, so an edit renumbers them all by changing that one field, and
+ * only the groups between two successive edits are ever moved. Lines are not renumbered
+ * at all: a group whose "(" is now on another line gets its tree copied with the lines
+ * moved when it is reused, which is still much cheaper than scanning and parsing it.
+ * <p>
+ * A group around an edited token is stale, but it is not searched for. The first token of
+ * every edit since the last parse without errors is remembered instead, and a group that
+ * spans one of them is never handed out. Such a parse has reached every stale group's
+ * "(" and replaced it with the group it parsed there.
+ */
+final class GroupTable {
+
+    // Edits without a clean parse in between after which stale groups are removed.
+    private static final int MAX_EDITS = 16;
+
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private Expression[] nodes;
+    private int size = 0;
+    // Groups [0, gap) are at the front of the arrays, groups [gap, size) at the end.
+    private int gap = 0;
+    private int tailShift = 0;
+    private int cursor = 0;
+
+    private Expression[] pending = new Expression[16];
+    private boolean[] expanded = new boolean[16];
+    private final Deque<Expression> moved = new ArrayDeque<>();
+
+    private final int[] edits = new int[MAX_EDITS];
+    private int editCount = 0;
+    // Groups closed by the current parse, in the order they were closed.
+    private GroupTable closed;
+
+    GroupTable() {
+        this(16);
+    }
+
+    private GroupTable(int capacity) {
+        starts = new int[capacity];
+        ends = new int[capacity];
+        lines = new int[capacity];
+        nodes = new Expression[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int end(int group) {
+        return group < gap ? ends[group] : ends[slot(group)] + tailShift;
+    }
+
+    /**
+     * The tree of a group whose "(" is now on the given line.
+     */
+    Expression node(int group, int line) {
+        int slot = slot(group);
+        if (lines[slot] != line) {
+            nodes[slot] = moveLines(nodes[slot], line - lines[slot]);
+            lines[slot] = line;
+        }
+        return nodes[slot];
+    }
+
+    /**
+     * The valid group starting at the given token, or -1. A parser asks in increasing
+     * order, so the search gallops on from the previous answer.
+     */
+    int find(int start) {
+        if (cursor > 0 && start(cursor - 1) >= start) cursor = 0;
+        int low = cursor;
+        int step = 1;
+        while (low + step <= size && start(low + step - 1) < start) {
+            low += step;
+            step *= 2;
+        }
+        int group = lowerBound(start, low, Math.min(low + step, size));
+        cursor = group;
+        if (group == size || start(group) != start || stale(start, end(group))) return -1;
+        return group;
+    }
+
+    /**
+     * Records a group the current parse closed.
+     */
+    void close(int start, int end, Expression node, int line) {
+        if (closed == null) closed = new GroupTable();
+        closed.insert(start, end, node, line);
+    }
+
+    /**
+     * Drops the groups that started in the replaced tokens and renumbers the later ones.
+     */
+    void edit(TokenEdit edit) {
+        cursor = 0;
+        int shift = edit.newEnd() - edit.oldEnd();
+        for (int i = 0; i < editCount; i++) {
+            if (edits[i] >= edit.oldEnd()) {
+                edits[i] += shift;
+            } else if (edits[i] > edit.start()) {
+                edits[i] = edit.start();
+            }
+        }
+        moveGap(lowerBound(edit.start()));
+        int replaced = 0;
+        while (gap + replaced < size && start(gap + replaced) < edit.oldEnd()) {
+            nodes[slot(gap + replaced)] = null;
+            replaced++;
+        }
+        size -= replaced;
+        tailShift += shift;
+
+        if (editCount == MAX_EDITS) removeStale();
+        edits[editCount++] = edit.start();
+    }
+
+    /**
+     * Ends a parse. The groups of a parse without errors go into the table and replace the
+     * stale ones; after errors they may hold placeholders and are dropped.
+     */
+    void parsed(boolean clean) {
+        if (clean && closed != null) {
+            long[] order = new long[closed.size];
+            for (int i = 0; i < closed.size; i++) {
+                order[i] = (long) closed.starts[i] << 32 | i;
+            }
+            Arrays.sort(order);
+            for (long entry : order) {
+                int i = (int) entry;
+                int start = closed.starts[i];
+                int group = lowerBound(start);
+                if (group < size && start(group) == start) {
+                    int slot = slot(group);
+                    ends[slot] = group < gap ? closed.ends[i] : closed.ends[i] - tailShift;
+                    lines[slot] = closed.lines[i];
+                    nodes[slot] = closed.nodes[i];
+                } else {
+                    moveGap(group);
+                    insert(start, closed.ends[i], closed.nodes[i], closed.lines[i]);
+                }
+            }
+        }
+        if (clean) editCount = 0;
+        closed = null;
+        cursor = 0;
+    }
+
+    private void insert(int start, int end, Expression node, int line) {
+        if (size == starts.length) grow();
+        starts[gap] = start;
+        ends[gap] = end;
+        lines[gap] = line;
+        nodes[gap] = node;
+        gap++;
+        size++;
+    }
+
+    private int start(int group) {
+        return group < gap ? starts[group] : starts[slot(group)] + tailShift;
+    }
+
+    // Where group is kept in the arrays.
+    private int slot(int group) {
+        return group < gap ? group : group + starts.length - size;
+    }
+
+    // The first group starting at or after the given token.
+    private int lowerBound(int start) {
+        return lowerBound(start, 0, size);
+    }
+
+    private int lowerBound(int start, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (start(middle) < start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private boolean stale(int start, int end) {
+        for (int i = 0; i < editCount; i++) {
+            if (start < edits[i] && end > edits[i]) return true;
+        }
+        return false;
+    }
+
+    // One pass over the whole table, only after many edits in a row left errors.
+    private void removeStale() {
+        moveGap(size);
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (stale(starts[i], ends[i])) continue;
+            starts[kept] = starts[i];
+            ends[kept] = ends[i];
+            lines[kept] = lines[i];
+            nodes[kept] = nodes[i];
+            kept++;
+        }
+        Arrays.fill(nodes, kept, size, null);
+        size = kept;
+        gap = kept;
+        editCount = 0;
+    }
+
+    private void moveGap(int group) {
+        int space = starts.length - size;
+        if (group < gap) {
+            int count = gap - group;
+            System.arraycopy(lines, group, lines, group + space, count);
+            System.arraycopy(nodes, group, nodes, group + space, count);
+            for (int i = gap - 1; i >= group; i--) {
+                starts[i + space] = starts[i] - tailShift;
+                ends[i + space] = ends[i] - tailShift;
+            }
+            Arrays.fill(nodes, group, Math.min(gap, group + space), null);
+        } else if (group > gap) {
+            int count = group - gap;
+            System.arraycopy(lines, gap + space, lines, gap, count);
+            System.arraycopy(nodes, gap + space, nodes, gap, count);
+            for (int i = gap; i < group; i++) {
+                starts[i] = starts[i + space] + tailShift;
+                ends[i] = ends[i + space] + tailShift;
+            }
+            Arrays.fill(nodes, Math.max(group, gap + space), group + space, null);
+        }
+        gap = group;
+    }
+
+    private void grow() {
+        int capacity = size * 2;
+        int[] grownStarts = new int[capacity];
+        int[] grownEnds = new int[capacity];
+        int[] grownLines = new int[capacity];
+        Expression[] grownNodes = new Expression[capacity];
+        copyAroundGap(starts, grownStarts, capacity);
+        copyAroundGap(ends, grownEnds, capacity);
+        copyAroundGap(lines, grownLines, capacity);
+        copyAroundGap(nodes, grownNodes, capacity);
+        starts = grownStarts;
+        ends = grownEnds;
+        lines = grownLines;
+        nodes = grownNodes;
+    }
+
+    // Copies the groups before the gap to the front of a larger array, the rest to its end.
+    private void copyAroundGap(Object from, Object to, int capacity) {
+        int tail = size - gap;
+        System.arraycopy(from, 0, to, 0, gap);
+        System.arraycopy(from, starts.length - tail, to, capacity - tail, tail);
+    }
+
+    /**
+     * A copy of the tree with the line of every token moved by {@code delta}. Walks it
+     * with an explicit stack, like {@link FlatAstBuilder#append}, kept for the next group.
+     */
+    private Expression moveLines(Expression expression, int delta) {
+        int count = 0;
+        pending[count++] = expression;
+        while (count > 0) {
+            Expression next = pending[--count];
+            pending[count] = null;
+            if (expanded[count]) {
+                expanded[count] = false;
+                if (next instanceof Binary binary) {
+                    Expression right = moved.pop();
+                    moved.push(new Binary(moved.pop(), moveLine(binary.operator(), delta), right));
+                } else if (next instanceof Unary unary) {
+                    moved.push(new Unary(moveLine(unary.operator(), delta), moved.pop()));
+                } else if (next instanceof Grouping) {
+                    moved.push(new Grouping(moved.pop()));
+                } else {
+                    Expression right = moved.pop();
+                    Expression middle = moved.pop();
+                    moved.push(new Ternary(moved.pop(), middle, right));
+                }
+                continue;
+            }
+            if (next instanceof Literal) {
+                moved.push(next);
+                continue;
+            }
+            if (next instanceof Variable variable) {
+                moved.push(new Variable(moveLine(variable.name(), delta)));
+                continue;
+            }
+            Expression a = null, b = null, c = null;
+            if (next instanceof Binary binary) {
+                a = binary.left();
+                b = binary.right();
+            } else if (next instanceof Unary unary) {
+                a = unary.operand();
+            } else if (next instanceof Grouping grouping) {
+                a = grouping.expression();
+            } else if (next instanceof Ternary ternary) {
+                a = ternary.left();
+                b = ternary.middle();
+                c = ternary.right();
+            } else {
+                throw new IllegalArgumentException("Cannot move " + next);
+            }
+            if (count + 4 > pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+                expanded = Arrays.copyOf(expanded, expanded.length * 2);
+            }
+            expanded[count] = true;
+            pending[count++] = next;
+            if (c != null) pending[count++] = c;
+            if (b != null) pending[count++] = b;
+            pending[count++] = a;
+        }
+        return moved.pop();
+    }
+
+    private static Token moveLine(Token token, int delta) {
+        return new Token(token.type(), token.lexeme(), token.literal(), token.line() + delta);
+    }
+}
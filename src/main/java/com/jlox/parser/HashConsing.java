@@ -0,0 +1,183 @@
+package com.jlox.parser;
+
+import com.jlox.scanner.Token;
+
+import java.util.Objects;
+
+/**
+ * Node factory that returns the existing node whenever an equal one was made before, so
+ * repeated subexpressions are stored once and the tree becomes a DAG. Use a
+ * {@link MemoizingVisitor}, such as {@link SharedNodeCounter}, to do the work for each
+ * shared node once.
+ * <p>
+ * Children are already shared when their parent is made, so nodes are compared by the
+ * identity of their children rather than by the records' deep {@code equals}, whose
+ * recursive {@code hashCode} would revisit every subtree. Operators are compared as
+ * whole tokens, line included, so a runtime error still reports the line of the
+ * operator that failed. One instance may serve several parses; every node it handed out
+ * stays reachable from it.
+ */
+public final class HashConsing implements NodeFactory {
+
+    private Expression[] table = new Expression[64];
+    private int size = 0;
+    private long requests = 0;
+
+    @Override
+    public Expression literal(Object value) {
+        requests++;
+        for (int slot = slot(literalHash(value)); ; slot = next(slot)) {
+            Expression node = table[slot];
+            if (node == null) return add(slot, new Literal(value));
+            if (node instanceof Literal literal && Objects.equals(literal.value(), value)) return node;
+        }
+    }
+
+    @Override
+    public Expression unary(Token operator, Expression operand) {
+        requests++;
+        for (int slot = slot(unaryHash(operator, operand)); ; slot = next(slot)) {
+            Expression node = table[slot];
+            if (node == null) return add(slot, new Unary(operator, operand));
+            if (node instanceof Unary unary && unary.operand() == operand
+                    && unary.operator().equals(operator)) {
+                return node;
+            }
+        }
+    }
+
+    @Override
+    public Expression binary(Expression left, Token operator, Expression right) {
+        requests++;
+        for (int slot = slot(binaryHash(left, operator, right)); ; slot = next(slot)) {
+            Expression node = table[slot];
+            if (node == null) return add(slot, new Binary(left, operator, right));
+            if (node instanceof Binary binary && binary.left() == left && binary.right() == right
+                    && binary.operator().equals(operator)) {
+                return node;
+            }
+        }
+    }
+
+    @Override
+    public Expression grouping(Expression expression) {
+        requests++;
+        for (int slot = slot(groupingHash(expression)); ; slot = next(slot)) {
+            Expression node = table[slot];
+            if (node == null) return add(slot, new Grouping(expression));
+            if (node instanceof Grouping grouping && grouping.expression() == expression) return node;
+        }
+    }
+
+    @Override
+    public Expression ternary(Expression left, Expression middle, Expression right) {
+        requests++;
+        for (int slot = slot(ternaryHash(left, middle, right)); ; slot = next(slot)) {
+            Expression node = table[slot];
+            if (node == null) return add(slot, new Ternary(left, middle, right));
+            if (node instanceof Ternary ternary && ternary.left() == left
+                    && ternary.middle() == middle && ternary.right() == right) {
+                return node;
+            }
+        }
+    }
+
+    @Override
+    public Expression variable(Token name) {
+        requests++;
+        for (int slot = slot(variableHash(name)); ; slot = next(slot)) {
+            Expression node = table[slot];
+            if (node == null) return add(slot, new Variable(name));
+            if (node instanceof Variable variable && variable.name().equals(name)) return node;
+        }
+    }
+
+    /**
+     * Distinct nodes made so far.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Nodes asked for so far, that is the size the trees would have had without sharing.
+     */
+    public long requests() {
+        return requests;
+    }
+
+    private int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private int next(int slot) {
+        return (slot + 1) & (table.length - 1);
+    }
+
+    private Expression add(int slot, Expression node) {
+        table[slot] = node;
+        if (++size * 2 > table.length) rehash();
+        return node;
+    }
+
+    private void rehash() {
+        Expression[] old = table;
+        table = new Expression[old.length * 2];
+        for (Expression node : old) {
+            if (node == null) continue;
+            int slot = slot(hash(node));
+            while (table[slot] != null) slot = next(slot);
+            table[slot] = node;
+        }
+    }
+
+    private static int hash(Expression node) {
+        if (node instanceof Literal literal) {
+            return literalHash(literal.value());
+        }
+        if (node instanceof Unary unary) {
+            return unaryHash(unary.operator(), unary.operand());
+        }
+        if (node instanceof Binary binary) {
+            return binaryHash(binary.left(), binary.operator(), binary.right());
+        }
+        if (node instanceof Grouping grouping) {
+            return groupingHash(grouping.expression());
+        }
+        if (node instanceof Variable variable) {
+            return variableHash(variable.name());
+        }
+        Ternary ternary = (Ternary) node;
+        return ternaryHash(ternary.left(), ternary.middle(), ternary.right());
+    }
+
+    private static int literalHash(Object value) {
+        return mix(1, Objects.hashCode(value));
+    }
+
+    private static int unaryHash(Token operator, Expression operand) {
+        return mix(mix(2, operator.hashCode()), System.identityHashCode(operand));
+    }
+
+    private static int binaryHash(Expression left, Token operator, Expression right) {
+        return mix(mix(mix(3, System.identityHashCode(left)), operator.hashCode()),
+                System.identityHashCode(right));
+    }
+
+    private static int groupingHash(Expression expression) {
+        return mix(4, System.identityHashCode(expression));
+    }
+
+    private static int ternaryHash(Expression left, Expression middle, Expression right) {
+        return mix(mix(mix(5, System.identityHashCode(left)), System.identityHashCode(middle)),
+                System.identityHashCode(right));
+    }
+
+    private static int variableHash(Token name) {
+        return mix(6, name.hashCode());
+    }
+
+    private static int mix(int hash, int value) {
+        return (hash ^ value) * 0x9E3779B9;
+    }
+}
@@ -0,0 +1,48 @@
+package com.jlox.parser;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.scanner.TokenBuffer;
+import com.jlox.scanner.TokenEdit;
+
+/**
+ * Re-parses a token buffer after an {@link TokenEdit}, reusing the trees of the
+ * parenthesized groups the edit did not touch.
+ * <p>
+ * The parser remembers every group it completes by the token index of its "(" together
+ * with the index after its ")". Groups entirely before the edited tokens are still valid
+ * as they are; groups entirely after it are too once moved by the change in token count
+ * and, if they moved to other lines, with the lines of their tokens moved. The
+ * {@link GroupTable} does both lazily, so an edit costs about as much as the tokens it
+ * changed. When the parser reaches a remembered group it skips straight past its tokens.
+ */
+public class IncrementalParser {
+
+    private GroupTable groups = new GroupTable();
+    private int reused;
+
+    public Expression parse(TokenBuffer tokens, ErrorReporter reporter) {
+        groups = new GroupTable();
+        return run(tokens, reporter);
+    }
+
+    public Expression reparse(TokenEdit edit, ErrorReporter reporter) {
+        groups.edit(edit);
+        return run(edit.tokens(), reporter);
+    }
+
+    /**
+     * How many groups the last parse took over instead of parsing them.
+     */
+    public int reused() {
+        return reused;
+    }
+
+    private Expression run(TokenBuffer tokens, ErrorReporter reporter) {
+        PrattParser parser = new PrattParser(tokens, reporter);
+        parser.groups = groups;
+        Expression expression = parser.parse();
+        groups.parsed(expression != null);
+        reused = parser.reusedGroups;
+        return expression;
+    }
+}
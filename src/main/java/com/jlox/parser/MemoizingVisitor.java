@@ -0,0 +1,133 @@
+package com.jlox.parser;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Visitor that computes its result once per node object and answers every later visit
+ * from a table, so on a DAG from {@link HashConsing} each shared subtree is worked out
+ * once however often it occurs. Subclasses implement the {@code compute} methods and
+ * recurse with {@code accept(this)} as usual.
+ * <p>
+ * Before a node is computed, the nodes below it that have no result yet are computed
+ * bottom-up from an explicit stack, so the recursion of {@code compute} only ever goes
+ * one level down and a DAG of any depth is visited without overflowing the Java stack.
+ * <p>
+ * Results are kept for the lifetime of the visitor, keyed by identity; only use this
+ * for results that depend on nothing but the node. A null result is not remembered, so
+ * such a node is computed again, recursively, on every visit.
+ */
+public abstract class MemoizingVisitor<R> implements ExpressionVisitor<R> {
+
+    private final Map<Expression, R> results = new IdentityHashMap<>();
+    private boolean below = false;
+
+    protected abstract R compute(Binary expression);
+
+    protected abstract R compute(Literal expression);
+
+    protected abstract R compute(Unary expression);
+
+    protected abstract R compute(Grouping expression);
+
+    protected abstract R compute(Ternary expression);
+
+    protected abstract R compute(Variable expression);
+
+    @Override
+    public final R visit(Binary expression) {
+        return memo(expression, () -> compute(expression));
+    }
+
+    @Override
+    public final R visit(Literal expression) {
+        return memo(expression, () -> compute(expression));
+    }
+
+    @Override
+    public final R visit(Unary expression) {
+        return memo(expression, () -> compute(expression));
+    }
+
+    @Override
+    public final R visit(Grouping expression) {
+        return memo(expression, () -> compute(expression));
+    }
+
+    @Override
+    public final R visit(Ternary expression) {
+        return memo(expression, () -> compute(expression));
+    }
+
+    @Override
+    public final R visit(Variable expression) {
+        return memo(expression, () -> compute(expression));
+    }
+
+    /**
+     * Distinct nodes whose result is remembered.
+     */
+    public int visited() {
+        return results.size();
+    }
+
+    private R memo(Expression expression, Supplier<R> compute) {
+        R result = results.get(expression);
+        if (result != null) return result;
+        if (!below) {
+            below = true;
+            try {
+                computeBelow(expression);
+            } finally {
+                below = false;
+            }
+        }
+        result = compute.get();
+        if (result != null) results.put(expression, result);
+        return result;
+    }
+
+    // Visits the nodes under expression that have no result yet, children first. A node
+    // is pushed once to schedule its children and once more, marked as expanded, to be
+    // visited after them.
+    private void computeBelow(Expression expression) {
+        Expression[] pending = new Expression[16];
+        boolean[] expanded = new boolean[16];
+        int count = 0;
+        pending[count++] = expression;
+        while (count > 0) {
+            Expression next = pending[--count];
+            pending[count] = null;
+            if (expanded[count]) {
+                expanded[count] = false;
+                if (next != expression) next.accept(this);
+                continue;
+            }
+            if (next != expression && results.containsKey(next)) continue;
+            Expression a = null, b = null, c = null;
+            if (next instanceof Binary binary) {
+                a = binary.left();
+                b = binary.right();
+            } else if (next instanceof Unary unary) {
+                a = unary.operand();
+            } else if (next instanceof Grouping grouping) {
+                a = grouping.expression();
+            } else if (next instanceof Ternary ternary) {
+                a = ternary.left();
+                b = ternary.middle();
+                c = ternary.right();
+            }
+            if (count + 4 > pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+                expanded = Arrays.copyOf(expanded, expanded.length * 2);
+            }
+            expanded[count] = true;
+            pending[count++] = next;
+            if (c != null) pending[count++] = c;
+            if (b != null) pending[count++] = b;
+            if (a != null) pending[count++] = a;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.jlox.parser;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Counts the nodes of a tree, a shared subtree once per occurrence. Each visit counts
+ * its own node and schedules the children on an explicit stack, so a tree of any depth
+ * is counted without recursion.
+ */
+public class NodeCounter implements ExpressionVisitor<Integer> {
+
+    private final Deque<Expression> pending = new ArrayDeque<>();
+
+    public int count(Expression expression) {
+        pending.clear();
+        pending.push(expression);
+        int count = 0;
+        while (!pending.isEmpty()) {
+            count += pending.pop().accept(this);
+        }
+        return count;
+    }
+
+    @Override
+    public Integer visit(Binary expression) {
+        pending.push(expression.right());
+        pending.push(expression.left());
+        return 1;
+    }
+
+    @Override
+    public Integer visit(Literal expression) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(Unary expression) {
+        pending.push(expression.operand());
+        return 1;
+    }
+
+    @Override
+    public Integer visit(Grouping expression) {
+        pending.push(expression.expression());
+        return 1;
+    }
+
+    @Override
+    public Integer visit(Ternary expression) {
+        pending.push(expression.right());
+        pending.push(expression.middle());
+        pending.push(expression.left());
+        return 1;
+    }
+
+    @Override
+    public Integer visit(Variable expression) {
+        return 1;
+    }
+}
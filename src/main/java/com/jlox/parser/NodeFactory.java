@@ -0,0 +1,54 @@
+package com.jlox.parser;
+
+import com.jlox.scanner.Token;
+
+/**
+ * Creates the nodes of a parse. {@link #TREE} allocates a new node every time;
+ * {@link HashConsing} hands out one shared node per distinct subtree.
+ */
+public interface NodeFactory {
+
+    public static final NodeFactory TREE = new NodeFactory() {
+        @Override
+        public Expression literal(Object value) {
+            return new Literal(value);
+        }
+
+        @Override
+        public Expression unary(Token operator, Expression operand) {
+            return new Unary(operator, operand);
+        }
+
+        @Override
+        public Expression binary(Expression left, Token operator, Expression right) {
+            return new Binary(left, operator, right);
+        }
+
+        @Override
+        public Expression grouping(Expression expression) {
+            return new Grouping(expression);
+        }
+
+        @Override
+        public Expression ternary(Expression left, Expression middle, Expression right) {
+            return new Ternary(left, middle, right);
+        }
+
+        @Override
+        public Expression variable(Token name) {
+            return new Variable(name);
+        }
+    };
+
+    public Expression literal(Object value);
+
+    public Expression unary(Token operator, Expression operand);
+
+    public Expression binary(Expression left, Token operator, Expression right);
+
+    public Expression grouping(Expression expression);
+
+    public Expression ternary(Expression left, Expression middle, Expression right);
+
+    public Expression variable(Token name);
+}
@@ -1,41 +1,51 @@
 package com.jlox.parser;
 
+import com.jlox.error.Error;
+import com.jlox.error.ErrorReporter;
 import com.jlox.error.ParseError;
 import com.jlox.scanner.Token;
+import com.jlox.scanner.TokenBuffer;
+import com.jlox.scanner.TokenSource;
 
 import java.util.List;
 
-import static com.jlox.scanner.Token.TokenType;
 import static com.jlox.scanner.Token.TokenType.*;
 
-public class Parser {
+public class Parser extends ParserBase {
 
-    private final List<Token> tokens;
-    private int currentPos = 0;
+    public Parser(TokenSource tokens) {
+        super(tokens);
+    }
+
+    public Parser(TokenSource tokens, ErrorReporter reporter) {
+        super(tokens, reporter);
+    }
 
     public Parser(List<Token> tokens) {
-        this.tokens = tokens;
+        this(TokenSource.of(tokens));
     }
 
-    public Expression parse() {
-        try {
-            return expression();
-        } catch (ParseError e) {
-            return null;
-        }
+    public Parser(TokenBuffer tokens) {
+        this(tokens, Error.console());
+    }
+
+    public Parser(TokenBuffer tokens, ErrorReporter reporter) {
+        super(tokens, reporter);
     }
 
     // expression -> equality
-    private Expression expression() {
+    @Override
+    Expression expression() {
         return equality();
     }
 
     //    equality       → comparison ( ( "!=" | "==" ) comparison )* ;
     private Expression equality() {
         if (match(BANG_EQUAL, EQUAL_EQUAL)) {
-            Token operator = advance();
+            advance();
+            Token operator = previous();
             comparison();
-            ParseError.error(operator, "Operation not supported: A left hand operand is expected");
+            error(operator, "Operation not supported: A left hand operand is expected");
             return null;
         }
 
@@ -43,7 +53,7 @@ public class Parser {
         while (match(EQUAL_EQUAL, BANG_EQUAL)) {
             Token operator = previous();
             Expression right = comparison();
-            left = new Binary(left, operator, right);
+            left = binary(left, operator, right);
         }
         return left;
     }
@@ -51,9 +61,10 @@ public class Parser {
     //    comparison     → term ( ( ">" | ">=" | "<" | "<=" ) term )* ;
     private Expression comparison() {
         if (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            Token operator = advance();
+            advance();
+            Token operator = previous();
             term();
-            ParseError.error(operator, "Operation not supported: A left hand operand is expected");
+            error(operator, "Operation not supported: A left hand operand is expected");
             return null;
         }
 
@@ -61,7 +72,7 @@ public class Parser {
         while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
             Token operator = previous();
             Expression right = term();
-            left = new Binary(left, operator, right);
+            left = binary(left, operator, right);
         }
         return left;
     }
@@ -69,9 +80,10 @@ public class Parser {
     //    term           → factor ( ( "-" | "+" ) factor )* ;
     private Expression term() {
         if (match(MINUS, PLUS)) {
-            Token operator = advance();
+            advance();
+            Token operator = previous();
             factor();
-            ParseError.error(operator, "Operation not supported: A left hand operand is expected");
+            error(operator, "Operation not supported: A left hand operand is expected");
             return null;
         }
 
@@ -79,7 +91,7 @@ public class Parser {
         while (match(PLUS, MINUS)) {
             Token operator = previous();
             Expression right = factor();
-            left = new Binary(left, operator, right);
+            left = binary(left, operator, right);
         }
         return left;
     }
@@ -87,9 +99,10 @@ public class Parser {
     //    factor         → unary ( ( "/" | "*" ) unary )* ;
     private Expression factor() {
         if (match(SLASH, STAR)) {
-            Token operator = advance();
+            advance();
+            Token operator = previous();
             unary();
-            ParseError.error(operator, "Operation not supported: A left hand operand is expected");
+            error(operator, "Operation not supported: A left hand operand is expected");
             return null;
         }
 
@@ -97,7 +110,7 @@ public class Parser {
         while (match(SLASH, STAR)) {
             Token operator = previous();
             Expression right = unary();
-            left = new Binary(left, operator, right);
+            left = binary(left, operator, right);
         }
         return left;
     }
@@ -107,7 +120,7 @@ public class Parser {
     private Expression unary() {
         if (match(BANG, MINUS)) {
             Token operator = previous();
-            return new Unary(operator, ternary());
+            return unary(operator, ternary());
         }
         return ternary();
     }
@@ -119,7 +132,7 @@ public class Parser {
         if (match(QMARK)) {
             Expression middle = expression();
             consume(COLON, "Expected token \":\"");
-            return new Ternary(left, middle, comma());
+            return ternary(left, middle, comma());
         }
         return left;
     }
@@ -131,93 +144,47 @@ public class Parser {
         while (match(COMMA)) {
             Token operator = previous();
             Expression right = primary();
-            left = new Binary(left, operator, right);
+            left = binary(left, operator, right);
         }
         return left;
     }
 
-    //    primary        → NUMBER | STRING | "true" | "false" | "nil"
+    //    primary        → NUMBER | STRING | "true" | "false" | "nil" | IDENTIFIER
     //                  | "(" expression ")" ;
     private Expression primary() {
         if (match(FALSE)) {
-            return new Literal(false);
+            return literal(false);
         }
         if (match(TRUE)) {
-            return new Literal(true);
+            return literal(true);
         }
         if (match(NIL)) {
-            return new Literal(null);
+            return literal(null);
         }
         if (match(STRING, NUMBER)) {
-            return new Literal(previous().lexeme());
+            return literal(value(position() - 1));
         }
-
-        if (match(LEFT_PAREN)) {
-            Expression expr = expression();
-            consume(RIGHT_PAREN, "Expected token \")\"");
-            return new Grouping(expr);
+        if (match(IDENTIFIER)) {
+            return variable(previous());
         }
-        throw ParseError.error(peek(), "Expected expression");
-    }
 
-    private Token consume(TokenType tokenType, String errorMessage) {
-        if (check(tokenType)) {
-            return advance();
+        if (check(LEFT_PAREN)) {
+            Expression reused = reuseGroup();
+            if (reused != null) return reused;
         }
-        throw ParseError.error(peek(), errorMessage);
-    }
-
-    private boolean match(TokenType... tokenTypes) {
-        for (TokenType tokenType : tokenTypes) {
-            if (check(tokenType)) {
-                advance();
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private Token advance() {
-        if (!end()) currentPos++;
-        return previous();
-    }
-
-    private boolean check(TokenType tokenType) {
-        if (end()) return false;
-        return peek().type() == tokenType;
-    }
-
-    private Token peek() {
-        return tokens.get(currentPos);
-    }
-
-    private Token previous() {
-        return tokens.get(currentPos - 1);
-    }
-
-    private void synchronize() {
-        advance();
-
-        while (!end()) {
-            if (previous().type() == SEMICOLON) return;
-
-            switch (peek().type()) {
-                case CLASS:
-                case FOR:
-                case IF:
-                case RETURN:
-                case VAR:
-                case WHILE:
-                case FUN:
-                case PRINT:
-                    return;
+        if (match(LEFT_PAREN)) {
+            int start = position() - 1;
+            try {
+                Expression expr = expression();
+                consume(RIGHT_PAREN, "Expected token \")\"");
+                return recordGroup(start, grouping(expr));
+            } catch (ParseError error) {
+                // A parenthesis is a synchronization point of its own: skip to the one that
+                // closes this group and carry on with the rest of the expression.
+                if (reporter.isFull() || !skipGroup()) throw error;
+                return grouping(literal(null));
             }
-            advance();
         }
+        throw error(peek(), "Expected expression");
     }
-
-    private boolean end() {
-        return (currentPos >= tokens.size());
-    }
-
 }
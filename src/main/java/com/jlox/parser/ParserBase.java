@@ -0,0 +1,282 @@
+package com.jlox.parser;
+
+import com.jlox.error.Error;
+import com.jlox.error.ErrorReporter;
+import com.jlox.error.ParseError;
+import com.jlox.scanner.Token;
+import com.jlox.scanner.TokenBuffer;
+import com.jlox.scanner.TokenSource;
+
+import static com.jlox.scanner.Token.TokenType;
+import static com.jlox.scanner.Token.TokenType.*;
+
+/**
+ * Token window, error recovery and matching helpers shared by {@link Parser} and
+ * {@link PrattParser}; subclasses only supply {@link #expression()}.
+ * <p>
+ * A {@link TokenBuffer} is read in place: types are read straight from its arrays, and
+ * a {@link Token} is only made for the operators, identifiers and diagnostics that go
+ * into a node or a message. A {@link TokenSource} hands out every token as a Token.
+ */
+abstract class ParserBase {
+
+    // The grammar only ever looks at the current and the previous token, so a small
+    // window over the stream is all that has to stay in memory.
+    private static final int WINDOW = 4;
+
+    private final TokenSource tokens;
+    // Instead of tokens when parsing a buffer.
+    private final TokenBuffer buffer;
+    final ErrorReporter reporter;
+    private final Token[] window = new Token[WINDOW];
+    private int pulled = 0;
+    private int currentPos = 0;
+    private int errors = 0;
+    private FlatAstBuilder builder;
+    private NodeFactory nodes = NodeFactory.TREE;
+
+    // Groups of earlier parses that may be reused instead of parsed, which also takes the
+    // groups parsed this time. Null unless parsing a buffer incrementally.
+    GroupTable groups;
+    int reusedGroups = 0;
+
+    ParserBase(TokenSource tokens) {
+        this(tokens, Error.console());
+    }
+
+    ParserBase(TokenSource tokens, ErrorReporter reporter) {
+        this.tokens = tokens;
+        this.buffer = null;
+        this.reporter = reporter;
+    }
+
+    ParserBase(TokenBuffer buffer, ErrorReporter reporter) {
+        this.tokens = null;
+        this.buffer = buffer;
+        this.reporter = reporter;
+    }
+
+    // Panic mode: after an error, resume at the next synchronization point and keep
+    // parsing so that a single pass reports every error, until the reporter is full.
+    public Expression parse() {
+        Expression expression = parseOrRecover();
+        while (errors > 0 && !end() && !reporter.isFull()) {
+            parseOrRecover();
+        }
+        return errors > 0 ? null : expression;
+    }
+
+    /**
+     * Makes the nodes of later parses with {@code nodes}, for instance a {@link HashConsing}
+     * to share repeated subtrees.
+     */
+    public void setNodeFactory(NodeFactory nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Parses into a {@link FlatAst} instead of a record tree. Returns null on errors,
+     * like {@link #parse()}.
+     */
+    public FlatAst parseFlat() {
+        builder = new FlatAstBuilder();
+        try {
+            return parse() == null ? null : builder.build();
+        } finally {
+            builder = null;
+        }
+    }
+
+    private Expression parseOrRecover() {
+        try {
+            return expression();
+        } catch (ParseError e) {
+            if (!reporter.isFull()) synchronize();
+            return null;
+        }
+    }
+
+    abstract Expression expression();
+
+    // Node factories. When parsing flat, nodes go to the builder in the order they are
+    // completed and the parser is only handed a placeholder; the builder's operand stack
+    // tracks the parser's own. After an error the result is discarded anyway, so nothing
+    // more is emitted.
+    private static final Expression EMITTED = new Literal(null);
+
+    Expression literal(Object value) {
+        if (builder == null) return nodes.literal(value);
+        if (errors == 0) builder.literal(value);
+        return EMITTED;
+    }
+
+    Expression unary(Token operator, Expression operand) {
+        if (builder == null) return nodes.unary(operator, operand);
+        if (errors == 0) builder.unary(operator);
+        return EMITTED;
+    }
+
+    Expression binary(Expression left, Token operator, Expression right) {
+        if (builder == null) return nodes.binary(left, operator, right);
+        if (errors == 0) builder.binary(operator);
+        return EMITTED;
+    }
+
+    Expression grouping(Expression expression) {
+        if (builder == null) return nodes.grouping(expression);
+        if (errors == 0) builder.grouping();
+        return EMITTED;
+    }
+
+    Expression ternary(Expression left, Expression middle, Expression right) {
+        if (builder == null) return nodes.ternary(left, middle, right);
+        if (errors == 0) builder.ternary();
+        return EMITTED;
+    }
+
+    Expression variable(Token name) {
+        if (builder == null) return nodes.variable(name);
+        if (errors == 0) builder.variable(name);
+        return EMITTED;
+    }
+
+    boolean skipGroup() {
+        int depth = 0;
+        while (!end()) {
+            if (check(LEFT_PAREN)) {
+                depth++;
+            } else if (check(RIGHT_PAREN) && depth-- == 0) {
+                advance();
+                return true;
+            }
+            advance();
+        }
+        return false;
+    }
+
+    /**
+     * At a "(": if the same group was parsed before, skips its tokens and returns its
+     * tree, otherwise null. A group parses the same wherever it appears, so only its own
+     * tokens have to be unchanged.
+     */
+    Expression reuseGroup() {
+        if (groups == null) return null;
+        int group = groups.find(currentPos);
+        if (group < 0) return null;
+        reusedGroups++;
+        Expression node = groups.node(group, buffer.line(currentPos));
+        seek(groups.end(group) - 1);
+        advance();
+        return node;
+    }
+
+    /**
+     * Records a group that was just closed, whose "(" was token {@code start}.
+     */
+    Expression recordGroup(int start, Expression node) {
+        if (groups != null) groups.close(start, currentPos, node, buffer.line(start));
+        return node;
+    }
+
+    int position() {
+        return currentPos;
+    }
+
+    private void seek(int index) {
+        if (buffer == null && index > pulled) {
+            tokens.skip(index - pulled);
+            pulled = index;
+        }
+        currentPos = index;
+    }
+
+    ParseError error(Token token, String message) {
+        errors++;
+        return ParseError.error(reporter, token, message);
+    }
+
+    void consume(TokenType tokenType, String errorMessage) {
+        if (!check(tokenType)) throw error(peek(), errorMessage);
+        advance();
+    }
+
+    boolean match(TokenType... tokenTypes) {
+        for (TokenType tokenType : tokenTypes) {
+            if (check(tokenType)) {
+                advance();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void advance() {
+        if (!end()) currentPos++;
+    }
+
+    boolean check(TokenType tokenType) {
+        if (end()) return false;
+        return peekType() == tokenType;
+    }
+
+    TokenType peekType() {
+        return type(currentPos);
+    }
+
+    TokenType type(int index) {
+        return buffer != null ? buffer.type(index) : token(index).type();
+    }
+
+    /**
+     * The value of a literal token.
+     */
+    Object value(int index) {
+        return buffer != null ? buffer.literal(index) : token(index).literal();
+    }
+
+    Token peek() {
+        return token(currentPos);
+    }
+
+    Token previous() {
+        return token(currentPos - 1);
+    }
+
+    Token token(int index) {
+        if (buffer != null) return buffer.token(index);
+        while (pulled <= index) {
+            window[pulled % WINDOW] = tokens.next();
+            pulled++;
+        }
+        if (index < 0 || index < pulled - WINDOW) {
+            throw new IllegalStateException("Token " + index + " is outside the lookahead window");
+        }
+        return window[index % WINDOW];
+    }
+
+    void synchronize() {
+        if (end()) return;
+        advance();
+
+        while (!end()) {
+            if (type(currentPos - 1) == SEMICOLON) return;
+
+            switch (peekType()) {
+                case CLASS:
+                case FOR:
+                case IF:
+                case RETURN:
+                case VAR:
+                case WHILE:
+                case FUN:
+                case PRINT:
+                    return;
+            }
+            advance();
+        }
+    }
+
+    boolean end() {
+        return peekType() == EOF;
+    }
+}
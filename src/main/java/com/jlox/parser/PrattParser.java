@@ -0,0 +1,311 @@
+package com.jlox.parser;
+
+import com.jlox.error.Error;
+import com.jlox.error.ErrorReporter;
+import com.jlox.error.ParseError;
+import com.jlox.scanner.Token;
+import com.jlox.scanner.Token.TokenType;
+import com.jlox.scanner.TokenBuffer;
+import com.jlox.scanner.TokenSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.jlox.scanner.Token.TokenType.*;
+
+/**
+ * Precedence-climbing parser for the same grammar as {@link Parser}, producing the same
+ * trees, but driven by a binding-power table and explicit frame and operand stacks
+ * instead of Java recursion, so nesting depth is limited only by the heap.
+ * <p>
+ * The binding powers mirror the levels of the recursive grammar, loosest first:
+ * equality, comparison, term, factor, then unary, whose operand is a ternary, whose
+ * condition and else branch are comma chains of primaries. Wherever a rule of the
+ * recursive parser only accepts a lower level, the {@code context} of the operand being
+ * read says which level that is.
+ */
+public class PrattParser extends ParserBase {
+
+    // Operand contexts; the first four double as the binding powers of the infix operators.
+    private static final int EQUALITY = 1;
+    private static final int COMPARISON = 2;
+    private static final int TERM = 3;
+    private static final int FACTOR = 4;
+    private static final int UNARY = 5;
+    private static final int PRIMARY = 6;
+
+    private static final byte[] infixPower = new byte[TokenType.values().length];
+
+    static {
+        infixPower[EQUAL_EQUAL.ordinal()] = EQUALITY;
+        infixPower[BANG_EQUAL.ordinal()] = EQUALITY;
+        infixPower[GREATER.ordinal()] = COMPARISON;
+        infixPower[GREATER_EQUAL.ordinal()] = COMPARISON;
+        infixPower[LESS.ordinal()] = COMPARISON;
+        infixPower[LESS_EQUAL.ordinal()] = COMPARISON;
+        infixPower[PLUS.ordinal()] = TERM;
+        infixPower[MINUS.ordinal()] = TERM;
+        infixPower[STAR.ordinal()] = FACTOR;
+        infixPower[SLASH.ordinal()] = FACTOR;
+    }
+
+    // Frame kinds. GROUP and CONDITION (a "?" waiting for its ":") are brackets that only
+    // their closing token reduces; the others reduce once an operator binding no tighter
+    // than their power shows up.
+    private static final byte GROUP = 0;
+    private static final byte CONDITION = 1;
+    private static final byte ELSE = 2;
+    private static final byte PREFIX = 3;
+    private static final byte INFIX = 4;
+    private static final byte COMMA_OPERATOR = 5;
+    private static final byte LEADING = 6;
+
+    private byte[] frameKinds = new byte[16];
+    private byte[] framePowers = new byte[16];
+    private Token[] frameTokens = new Token[16];
+    private int[] frameMarks = new int[16];
+    private int[] frameStarts = new int[16];
+    private int frames = 0;
+
+    private Expression[] operands = new Expression[16];
+    private int operandCount = 0;
+
+    public PrattParser(TokenSource tokens) {
+        super(tokens);
+    }
+
+    public PrattParser(TokenSource tokens, ErrorReporter reporter) {
+        super(tokens, reporter);
+    }
+
+    public PrattParser(List<Token> tokens) {
+        this(TokenSource.of(tokens));
+    }
+
+    public PrattParser(TokenBuffer tokens) {
+        this(tokens, Error.console());
+    }
+
+    public PrattParser(TokenBuffer tokens, ErrorReporter reporter) {
+        super(tokens, reporter);
+    }
+
+    @Override
+    Expression expression() {
+        frames = 0;
+        operandCount = 0;
+        int context = EQUALITY;
+        boolean expectOperand = true;
+
+        for (; ; ) {
+            try {
+                if (expectOperand) {
+                    context = operand(context);
+                    expectOperand = context != 0;
+                    continue;
+                }
+
+                TokenType type = peekType();
+                int power = infixPower[type.ordinal()];
+                if (type == COMMA) {
+                    reduce(PRIMARY + 1);
+                    Token token = peek();
+                    advance();
+                    push(COMMA_OPERATOR, PRIMARY + 1, token);
+                    context = PRIMARY;
+                    expectOperand = true;
+                } else if (type == QMARK && !inElseBranch()) {
+                    advance();
+                    push(CONDITION, 0, null);
+                    context = EQUALITY;
+                    expectOperand = true;
+                } else if (type == COLON && closes(CONDITION)) {
+                    advance();
+                    frameKinds[frames - 1] = ELSE;
+                    framePowers[frames - 1] = PRIMARY;
+                    context = PRIMARY;
+                    expectOperand = true;
+                } else if (type == RIGHT_PAREN && closes(GROUP)) {
+                    advance();
+                    frames--;
+                    operands[operandCount - 1] = recordGroup(frameStarts[frames],
+                            grouping(operands[operandCount - 1]));
+                } else if (power > 0 && !reduce(power)) {
+                    Token token = peek();
+                    advance();
+                    push(INFIX, power, token);
+                    context = power + 1;
+                    expectOperand = true;
+                } else {
+                    return finish();
+                }
+            } catch (ParseError error) {
+                recover(error);
+                expectOperand = false;
+            }
+        }
+    }
+
+    /**
+     * Reads one prefix construct in the given context. Returns the context for the operand
+     * that has to follow it, or 0 once a complete primary has been pushed.
+     */
+    private int operand(int context) {
+        TokenType type = peekType();
+        int power = infixPower[type.ordinal()];
+
+        if (context <= FACTOR && power >= context) {
+            // An infix operator with nothing on its left. Like the recursive parser, skip
+            // it and the token after it, read the operand it would have had, and report
+            // the error against that token.
+            advance();
+            advance();
+            push(LEADING, power, previous());
+            return power + 1;
+        }
+        if (context <= UNARY && (type == BANG || type == MINUS)) {
+            push(PREFIX, UNARY, peek());
+            advance();
+            return PRIMARY;
+        }
+        if (type == LEFT_PAREN) {
+            Expression reused = reuseGroup();
+            if (reused != null) {
+                pushOperand(reused);
+                return 0;
+            }
+            push(GROUP, 0, null);
+            advance();
+            return EQUALITY;
+        }
+        switch (type) {
+            case FALSE:
+                pushOperand(literal(false));
+                break;
+            case TRUE:
+                pushOperand(literal(true));
+                break;
+            case NIL:
+                pushOperand(literal(null));
+                break;
+            case STRING:
+            case NUMBER:
+                pushOperand(literal(value(position())));
+                break;
+            case IDENTIFIER:
+                pushOperand(variable(peek()));
+                break;
+            default:
+                throw error(peek(), "Expected expression");
+        }
+        advance();
+        return 0;
+    }
+
+    private Expression finish() {
+        reduce(0);
+        if (frames > 0) {
+            if (frameKinds[frames - 1] == GROUP) {
+                throw error(peek(), "Expected token \")\"");
+            }
+            throw error(peek(), "Expected token \":\"");
+        }
+        return operands[--operandCount];
+    }
+
+    // Same recovery as Parser.primary: abandon the innermost open group, skip to its
+    // closing parenthesis and stand in a placeholder for it.
+    private void recover(ParseError error) {
+        while (!reporter.isFull()) {
+            int group = frames - 1;
+            while (group >= 0 && frameKinds[group] != GROUP) group--;
+            if (group < 0) break;
+            frames = group;
+            operandCount = frameMarks[group];
+            if (skipGroup()) {
+                pushOperand(grouping(literal(null)));
+                return;
+            }
+        }
+        throw error;
+    }
+
+    // "?" only follows a comma chain, and the else branch of a ternary cannot take one.
+    private boolean inElseBranch() {
+        reduce(PRIMARY + 1);
+        return frames > 0 && frameKinds[frames - 1] == ELSE;
+    }
+
+    // Reduces everything down to the innermost bracket and checks that it is the given one.
+    private boolean closes(byte bracket) {
+        reduce(0);
+        return frames > 0 && frameKinds[frames - 1] == bracket;
+    }
+
+    /**
+     * Reduces the frames that bind at least as tightly as {@code power}. Returns true if
+     * that closed a leading-operator error of exactly this power: the recursive parser
+     * gives up on that level, so an operator of the same power ends the expression there.
+     */
+    private boolean reduce(int power) {
+        boolean closedLeading = false;
+        while (frames > 0) {
+            int top = frames - 1;
+            byte kind = frameKinds[top];
+            if (kind == GROUP || kind == CONDITION || framePowers[top] < power) return closedLeading;
+            frames--;
+            Token token = frameTokens[top];
+            frameTokens[top] = null;
+            switch (kind) {
+                case INFIX:
+                case COMMA_OPERATOR: {
+                    Expression right = operands[--operandCount];
+                    Expression left = operands[--operandCount];
+                    pushOperand(binary(left, token, right));
+                    break;
+                }
+                case PREFIX:
+                    pushOperand(unary(token, operands[--operandCount]));
+                    break;
+                case ELSE: {
+                    Expression right = operands[--operandCount];
+                    Expression middle = operands[--operandCount];
+                    Expression left = operands[--operandCount];
+                    pushOperand(ternary(left, middle, right));
+                    break;
+                }
+                case LEADING:
+                    closedLeading |= framePowers[top] == power;
+                    operandCount--;
+                    error(token, "Operation not supported: A left hand operand is expected");
+                    pushOperand(null);
+                    break;
+            }
+        }
+        return closedLeading;
+    }
+
+    private void push(byte kind, int power, Token token) {
+        if (frames == frameKinds.length) {
+            int capacity = frames * 2;
+            frameKinds = Arrays.copyOf(frameKinds, capacity);
+            framePowers = Arrays.copyOf(framePowers, capacity);
+            frameTokens = Arrays.copyOf(frameTokens, capacity);
+            frameMarks = Arrays.copyOf(frameMarks, capacity);
+            frameStarts = Arrays.copyOf(frameStarts, capacity);
+        }
+        frameKinds[frames] = kind;
+        framePowers[frames] = (byte) power;
+        frameTokens[frames] = token;
+        frameMarks[frames] = operandCount;
+        frameStarts[frames] = position();
+        frames++;
+    }
+
+    private void pushOperand(Expression expression) {
+        if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operandCount * 2);
+        }
+        operands[operandCount++] = expression;
+    }
+}
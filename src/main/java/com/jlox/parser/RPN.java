@@ -1,46 +1,107 @@
 package com.jlox.parser;
 
-public class RPN implements ExpressionVisitor<String> {
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Prints the tree in reverse Polish notation, e.g. {@code 1.0 2.0 +}. Like
+ * {@link AstPrinter} it streams into an {@link Appendable} and walks the tree with an
+ * explicit stack.
+ */
+public class RPN implements ExpressionVisitor<Void> {
+
+    private final Deque<Object> pending = new ArrayDeque<>();
+    private Appendable out;
 
     public String print(Expression expression) {
-        return expression.getExpression().accept(this);
+        StringBuilder string = new StringBuilder();
+        try {
+            print(expression, string);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return string.toString();
+    }
+
+    public void print(Expression expression, Appendable out) throws IOException {
+        this.out = out;
+        pending.clear();
+        pending.push(expression.getExpression());
+        try {
+            while (!pending.isEmpty()) {
+                Object next = pending.pop();
+                if (next instanceof Expression node) {
+                    node.accept(this);
+                } else {
+                    emit((String) next);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.out = null;
+        }
     }
 
     @Override
-    public String visit(Binary expression) {
-        return parenthesize(expression.operator().lexeme(),
-                expression.left(), expression.left());
+    public Void visit(Binary expression) {
+        parenthesize(expression.operator().lexeme(),
+                expression.left(), expression.right());
+        return null;
     }
 
     @Override
-    public String visit(Literal expression) {
-        if (expression == null) return "nil";
-        return expression.value().toString();
+    public Void visit(Literal expression) {
+        if (expression.value() == null) {
+            emit("nil");
+        } else {
+            emit(expression.value().toString());
+        }
+        return null;
     }
 
     @Override
-    public String visit(Unary expression) {
-        return parenthesize(expression.operator().lexeme(), expression.operand());
+    public Void visit(Variable expression) {
+        emit(expression.name().lexeme());
+        return null;
     }
 
     @Override
-    public String visit(Grouping expression) {
-        return parenthesize("grouping",
+    public Void visit(Unary expression) {
+        parenthesize(expression.operator().lexeme(), expression.operand());
+        return null;
+    }
+
+    @Override
+    public Void visit(Grouping expression) {
+        parenthesize("grouping",
                 expression.expression());
+        return null;
     }
 
     @Override
-    public String visit(Ternary expression) {
-        return parenthesize("?:",
+    public Void visit(Ternary expression) {
+        parenthesize("?:",
                 expression.left(), expression.middle(), expression.right());
+        return null;
     }
 
-    public String parenthesize(String name, Expression... expressions) {
-        StringBuilder string = new StringBuilder();
-        for (Expression expression : expressions) {
-            string.append(expression.accept(this)).append(" ");
+    // Schedules "child " for each operand, then the name.
+    private void parenthesize(String name, Expression... expressions) {
+        pending.push(name);
+        for (int i = expressions.length - 1; i >= 0; i--) {
+            pending.push(" ");
+            pending.push(expressions[i]);
+        }
+    }
+
+    private void emit(String text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        string.append(name);
-        return string.toString();
     }
 }
@@ -0,0 +1,309 @@
+package com.jlox.parser;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the values constant subtrees folded to, so a {@link ConstantFolder} given
+ * the same cache turns a subtree it has seen before, in this expression or an earlier
+ * one, into its {@link Literal} without walking it. Meant to live across the lines of
+ * the REPL or the requests of the server.
+ * <p>
+ * Subtrees are matched by structure: operators by type, literals by value, ignoring
+ * lines and {@link Grouping}s. Their structural hashes are computed in one pass over the
+ * tree by {@link #keys}, rather than by the records' own {@code hashCode}, which walks
+ * the whole subtree every time and takes the lines in. Only subtrees of at least
+ * {@link #MIN_NODES} nodes without a {@link Variable} are looked up; smaller ones fold
+ * faster than they hash, and a variable's value is not part of the tree. Subtrees that
+ * fail at runtime are never folded and never cached, so their errors are still reported
+ * with their own line.
+ * <p>
+ * An entry weighs the nodes of its subtree plus one for every eight characters of a
+ * string value, and the cache evicts the least recently used entries to stay within both
+ * its entry count and its total weight. It is split into {@link #STRIPES} independently
+ * locked stripes, each holding its share of both bounds, so folders on several threads
+ * only wait for each other when they touch the same stripe.
+ */
+public final class ResultCache {
+
+    public static final int MIN_NODES = 8;
+    public static final int STRIPES = 16;
+    public static final int DEFAULT_MAX_ENTRIES = 16 * 1024;
+    public static final long DEFAULT_MAX_WEIGHT = 1 << 20;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+    }
+
+    public ResultCache(int maxEntries, long maxWeight) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(Math.max(maxEntries / STRIPES, 1), Math.max(maxWeight / STRIPES, 1));
+        }
+    }
+
+    /**
+     * The keys of the subtrees of {@code root} worth looking up, by node.
+     */
+    public Map<Expression, Key> keys(Expression root) {
+        Hasher hasher = new Hasher();
+        hasher.hash(root);
+        return hasher.keys == null ? Map.of() : hasher.keys;
+    }
+
+    /**
+     * The literal the subtree of the key folded to, or null.
+     */
+    public Literal get(Key key) {
+        Stripe stripe = stripe(key);
+        Literal literal;
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(key);
+            literal = entry == null ? null : entry.literal;
+        }
+        if (literal == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return literal;
+    }
+
+    public void put(Key key, Literal literal) {
+        Entry entry = new Entry(literal, weight(key, literal));
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            // An entry that would empty the whole stripe is not worth it.
+            if (entry.weight > stripe.maxWeight) return;
+            Entry replaced = stripe.entries.put(key, entry);
+            stripe.weight += entry.weight - (replaced == null ? 0 : replaced.weight);
+            Iterator<Entry> eldest = stripe.entries.values().iterator();
+            while (stripe.entries.size() > stripe.maxEntries || stripe.weight > stripe.maxWeight) {
+                stripe.weight -= eldest.next().weight;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public long weight() {
+        long weight = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                weight += stripe.weight;
+            }
+        }
+        return weight;
+    }
+
+    private Stripe stripe(Key key) {
+        int hash = key.hash * 0x9E3779B9;
+        return stripes[hash >>> (Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES))];
+    }
+
+    private static long weight(Key key, Literal literal) {
+        long weight = key.nodes;
+        if (literal.value() instanceof String string) weight += string.length() / 8;
+        return weight;
+    }
+
+    /**
+     * A subtree as the cache matches it, with its structural hash.
+     */
+    public static final class Key {
+        private final Expression expression;
+        private final int hash;
+        private final int nodes;
+
+        private Key(Expression expression, int hash, int nodes) {
+            this.expression = expression;
+            this.hash = hash;
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && hash == key.hash && nodes == key.nodes
+                    && same(expression, key.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Compares pairs of subtrees from an explicit stack, so deep trees do not recurse.
+    private static boolean same(Expression a, Expression b) {
+        Expression[] pairs = new Expression[16];
+        int count = 0;
+        pairs[count++] = a;
+        pairs[count++] = b;
+        while (count > 0) {
+            Expression y = pairs[--count];
+            Expression x = pairs[--count];
+            while (x instanceof Grouping grouping) x = grouping.expression();
+            while (y instanceof Grouping grouping) y = grouping.expression();
+            if (x == y) continue;
+            if (count + 6 > pairs.length) pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            if (x instanceof Literal p && y instanceof Literal q) {
+                if (!Objects.equals(p.value(), q.value())) return false;
+            } else if (x instanceof Unary p && y instanceof Unary q) {
+                if (p.operator().type() != q.operator().type()) return false;
+                pairs[count++] = p.operand();
+                pairs[count++] = q.operand();
+            } else if (x instanceof Binary p && y instanceof Binary q) {
+                if (p.operator().type() != q.operator().type()) return false;
+                pairs[count++] = p.right();
+                pairs[count++] = q.right();
+                pairs[count++] = p.left();
+                pairs[count++] = q.left();
+            } else if (x instanceof Ternary p && y instanceof Ternary q) {
+                pairs[count++] = p.right();
+                pairs[count++] = q.right();
+                pairs[count++] = p.middle();
+                pairs[count++] = q.middle();
+                pairs[count++] = p.left();
+                pairs[count++] = q.left();
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Hashes bottom-up from an explicit stack, counting the nodes and variables below each
+    // node on the way. A node is pushed once to schedule its children and once more, with
+    // the counts so far, to combine their hashes after them.
+    private static final class Hasher {
+        Map<Expression, Key> keys;
+        int nodes = 0;
+        int variables = 0;
+        Expression[] pending = new Expression[16];
+        boolean[] expanded = new boolean[16];
+        int[] nodesBefore = new int[16];
+        int[] variablesBefore = new int[16];
+        int count = 0;
+        int[] hashes = new int[16];
+        int hashCount = 0;
+
+        void hash(Expression root) {
+            push(root);
+            while (count > 0) {
+                Expression expression = pending[--count];
+                pending[count] = null;
+                if (expanded[count]) {
+                    combine(expression, nodesBefore[count], variablesBefore[count]);
+                    continue;
+                }
+                while (expression instanceof Grouping grouping) expression = grouping.expression();
+                expanded[count] = true;
+                nodesBefore[count] = nodes++;
+                variablesBefore[count] = variables;
+                pending[count++] = expression;
+                if (expression instanceof Unary unary) {
+                    push(unary.operand());
+                } else if (expression instanceof Binary binary) {
+                    push(binary.right());
+                    push(binary.left());
+                } else if (expression instanceof Ternary ternary) {
+                    push(ternary.right());
+                    push(ternary.middle());
+                    push(ternary.left());
+                } else if (expression instanceof Variable) {
+                    variables++;
+                }
+            }
+        }
+
+        private void combine(Expression expression, int nodesBefore, int variablesBefore) {
+            int hash;
+            if (expression instanceof Literal literal) {
+                hash = Objects.hashCode(literal.value());
+            } else if (expression instanceof Unary unary) {
+                hash = 31 * unary.operator().type().ordinal() + hashes[--hashCount];
+            } else if (expression instanceof Binary binary) {
+                int right = hashes[--hashCount];
+                hash = 31 * (31 * hashes[--hashCount] + binary.operator().type().ordinal()) + right;
+            } else if (expression instanceof Ternary) {
+                int right = hashes[--hashCount];
+                int middle = hashes[--hashCount];
+                hash = 31 * (31 * (31 + hashes[--hashCount]) + middle) + right;
+            } else {
+                hash = 0;
+            }
+            int size = nodes - nodesBefore;
+            if (variables == variablesBefore && size >= MIN_NODES) {
+                if (keys == null) keys = new IdentityHashMap<>();
+                keys.put(expression, new Key(expression, hash, size));
+            }
+            if (hashCount == hashes.length) hashes = Arrays.copyOf(hashes, hashCount * 2);
+            hashes[hashCount++] = hash;
+        }
+
+        private void push(Expression expression) {
+            if (count == pending.length) {
+                pending = Arrays.copyOf(pending, count * 2);
+                expanded = Arrays.copyOf(expanded, count * 2);
+                nodesBefore = Arrays.copyOf(nodesBefore, count * 2);
+                variablesBefore = Arrays.copyOf(variablesBefore, count * 2);
+            }
+            expanded[count] = false;
+            pending[count++] = expression;
+        }
+    }
+
+    private static final class Entry {
+        final Literal literal;
+        final long weight;
+
+        Entry(Literal literal, long weight) {
+            this.literal = literal;
+            this.weight = weight;
+        }
+    }
+
+    // Entries in access order, so the first is the least recently used.
+    private static final class Stripe {
+        final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        final int maxEntries;
+        final long maxWeight;
+        long weight = 0;
+
+        Stripe(int maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.jlox.parser;
+
+/**
+ * Counts the nodes of a tree like {@link NodeCounter}, a shared subtree once per
+ * occurrence, but works out each distinct node only once. On a DAG from
+ * {@link HashConsing} that takes time in the size of the DAG rather than of the tree it
+ * stands for, which may be exponentially larger; hence the {@code long}.
+ */
+public class SharedNodeCounter extends MemoizingVisitor<Long> {
+
+    public long count(Expression expression) {
+        return expression.accept(this);
+    }
+
+    @Override
+    protected Long compute(Binary expression) {
+        return 1 + expression.left().accept(this) + expression.right().accept(this);
+    }
+
+    @Override
+    protected Long compute(Literal expression) {
+        return 1L;
+    }
+
+    @Override
+    protected Long compute(Unary expression) {
+        return 1 + expression.operand().accept(this);
+    }
+
+    @Override
+    protected Long compute(Grouping expression) {
+        return 1 + expression.expression().accept(this);
+    }
+
+    @Override
+    protected Long compute(Ternary expression) {
+        return 1 + expression.left().accept(this) + expression.middle().accept(this)
+                + expression.right().accept(this);
+    }
+
+    @Override
+    protected Long compute(Variable expression) {
+        return 1L;
+    }
+}
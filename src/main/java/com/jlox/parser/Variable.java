@@ -0,0 +1,16 @@
+package com.jlox.parser;
+
+import com.jlox.scanner.Token;
+
+public record Variable(Token name) implements Expression {
+
+    @Override
+    public Variable getExpression() {
+        return this;
+    }
+
+    @Override
+    public <R> R accept(ExpressionVisitor<R> visitor) {
+        return visitor.visit(this);
+    }
+}
@@ -0,0 +1,144 @@
+package com.jlox.scanner;
+
+import com.jlox.error.ErrorReporter;
+
+/**
+ * Keeps the tokens of a source that is being edited and re-scans only around each edit.
+ * <p>
+ * Between two tokens the scanner carries no state but its position and line: comments
+ * and strings are consumed whole within one step. So scanning may restart at the end of
+ * any token, and once a new token starts at the same place (after the edit) as an old
+ * one did, everything from there on would scan the same and the old tokens are reused,
+ * moved by the change in length and in lines. Scanning resumes at the last token that
+ * ends at least two characters before the edit, since a token can look that far ahead
+ * ({@code 1.} followed by a digit), and so re-reads any comment or whitespace the edit
+ * falls into. An edit that opens a string or comment runs on to the end of the source,
+ * as it has to.
+ * <p>
+ * The buffer is edited in place. The old tokens wait behind its gap, so moving them
+ * costs two additions, and only the tokens between this edit and the previous one are
+ * copied.
+ * <p>
+ * If the previous scan reported errors the next one scans everything again, so the
+ * reported diagnostics are always complete.
+ */
+public class IncrementalScanner {
+
+    private TokenBuffer tokens;
+    private boolean hadError = true;
+    private int scanned;
+
+    public TokenBuffer scan(CharSequence source, ErrorReporter reporter) {
+        Scanner scanner = new Scanner(source, reporter);
+        int errors = reporter.getDiagnostics().size();
+        tokens = scanner.scanBuffer();
+        hadError = reporter.getDiagnostics().size() > errors;
+        scanned = tokens.size();
+        return tokens;
+    }
+
+    /**
+     * Re-scans after {@code removed} characters at {@code offset} were replaced by
+     * {@code inserted} characters, giving {@code source}.
+     */
+    public TokenEdit edit(CharSequence source, int offset, int removed, int inserted, ErrorReporter reporter) {
+        if (tokens == null || hadError) {
+            int oldSize = tokens == null ? 0 : tokens.size();
+            TokenBuffer fresh = scan(source, reporter);
+            return new TokenEdit(fresh, 0, oldSize, fresh.size(), 0);
+        }
+
+        // Tokens [0, keep) stay; scanning restarts where the last of them ends.
+        int keep = lastKeptBefore(tokens, offset);
+        int position = keep == 0 ? 0 : tokens.start(keep - 1) + tokens.length(keep - 1);
+        int line = keep == 0 ? 1 : tokens.line(keep - 1);
+
+        // The old tokens from keep on go behind the gap, already moved to where they
+        // would start in the new source, and the new ones are scanned into the gap.
+        tokens.moveGap(keep);
+        tokens.moveTail(inserted - removed, 0);
+        tokens.setSource(source);
+        int oldTail = tokens.size() - keep;
+        Scanner scanner = new Scanner(source, reporter);
+        int errors = reporter.getDiagnostics().size();
+        scanner.resume(tokens, position, line);
+
+        int resync = -1;
+        boolean more = true;
+        while (more) {
+            more = scanner.scanNext();
+            int last = tokens.gap() - 1;
+            int start = tokens.start(last);
+            if (start >= offset + inserted) {
+                int match = findAfterGap(tokens, start);
+                if (match >= 0) {
+                    resync = match;
+                    break;
+                }
+            }
+        }
+        hadError = reporter.getDiagnostics().size() > errors;
+
+        int oldEnd = keep + oldTail;
+        int lineDelta = 0;
+        if (resync >= 0) {
+            // Drop the token that matched and keep the old one, and everything after it.
+            int replaced = resync - tokens.gap();
+            oldEnd = keep + replaced;
+            lineDelta = tokens.line(tokens.gap() - 1) - tokens.line(resync);
+            tokens.removeBeforeGap(1);
+            tokens.removeAfterGap(replaced);
+            tokens.moveTail(0, lineDelta);
+        } else {
+            tokens.removeAfterGap(oldTail);
+        }
+        int newEnd = tokens.gap();
+        scanned = newEnd - keep;
+        return new TokenEdit(tokens, keep, oldEnd, newEnd, lineDelta);
+    }
+
+    public TokenBuffer tokens() {
+        return tokens;
+    }
+
+    /**
+     * How many tokens the last scan or edit actually scanned.
+     */
+    public int scanned() {
+        return scanned;
+    }
+
+    // The number of leading tokens, EOF excluded, that end at least two characters
+    // before the offset.
+    private static int lastKeptBefore(TokenBuffer tokens, int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.start(middle) + tokens.length(middle) + 2 <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // The token after the gap that starts at the given offset, or -1.
+    private static int findAfterGap(TokenBuffer tokens, int start) {
+        int low = tokens.gap();
+        int high = tokens.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = tokens.start(middle);
+            if (value < start) {
+                low = middle + 1;
+            } else if (value > start) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+}
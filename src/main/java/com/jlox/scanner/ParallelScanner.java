@@ -0,0 +1,160 @@
+package com.jlox.scanner;
+
+import com.jlox.error.Error;
+import com.jlox.error.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Scans a large source on several threads into the same {@link TokenBuffer} a
+ * {@link Scanner} would produce.
+ * <p>
+ * The source is cut into chunks at line starts, and each chunk is scanned on the common
+ * fork/join pool as if it started the source: on line 1 and outside any string or
+ * comment. That guess is wrong when a string or block comment crosses into the chunk,
+ * so the chunks are stitched by one sequential scan that knows the real state. Like
+ * {@link IncrementalScanner} it relies on the scanner carrying nothing but its position
+ * and line between tokens: once the real scan produces a token where a chunk has one
+ * starting, the rest of the chunk is taken as scanned, its lines moved to the real ones,
+ * and the real scan resumes where the chunk's scan stopped. Normally that costs one token
+ * per chunk; a chunk that lies entirely inside a comment or string is scanned again.
+ * <p>
+ * A chunk that reports an error may have been misread the same way and its diagnostics
+ * cannot be placed, so then the whole source is scanned again sequentially and the
+ * diagnostics are always exactly those of a sequential scan.
+ */
+public class ParallelScanner {
+
+    /**
+     * The smallest chunk worth a task of its own.
+     */
+    public static final int MIN_CHUNK = 1 << 20;
+
+    private final CharSequence source;
+    private final ErrorReporter reporter;
+    private final int chunks;
+
+    public ParallelScanner(CharSequence source) {
+        this(source, Error.console());
+    }
+
+    public ParallelScanner(CharSequence source, ErrorReporter reporter) {
+        this(source, reporter, Math.min(ForkJoinPool.getCommonPoolParallelism(), source.length() / MIN_CHUNK));
+    }
+
+    /**
+     * Scans in at most {@code chunks} chunks whatever their size, fewer if the source has
+     * fewer lines.
+     */
+    public ParallelScanner(CharSequence source, ErrorReporter reporter, int chunks) {
+        this.source = source;
+        this.reporter = reporter;
+        this.chunks = Math.max(chunks, 1);
+    }
+
+    public TokenBuffer scanBuffer() {
+        List<Chunk> pieces = split();
+        if (pieces.size() == 1) return new Scanner(source, reporter).scanBuffer();
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(pieces.size());
+        for (Chunk chunk : pieces) {
+            tasks.add(ForkJoinPool.commonPool().submit(chunk::scan));
+        }
+        for (ForkJoinTask<?> task : tasks) task.join();
+        for (Chunk chunk : pieces) {
+            if (chunk.reporter.hadError()) return new Scanner(source, reporter).scanBuffer();
+        }
+        return stitch(pieces);
+    }
+
+    // Cuts after the first newline at or past each even share of the source.
+    private List<Chunk> split() {
+        List<Chunk> pieces = new ArrayList<>(chunks);
+        int length = source.length();
+        int start = 0;
+        for (int i = 1; i <= chunks && start < length; i++) {
+            int end = i == chunks ? length : Math.max(start + 1, (int) ((long) length * i / chunks));
+            while (end < length && source.charAt(end - 1) != '\n') end++;
+            pieces.add(new Chunk(start, end));
+            start = end;
+        }
+        if (pieces.isEmpty()) pieces.add(new Chunk(0, 0));
+        return pieces;
+    }
+
+    private TokenBuffer stitch(List<Chunk> pieces) {
+        int estimate = 16;
+        for (Chunk chunk : pieces) estimate += chunk.tokens.size();
+        TokenBuffer stitched = new TokenBuffer(source, estimate);
+        Scanner scanner = new Scanner(source, reporter);
+        scanner.resume(stitched, 0, 1);
+
+        int next = 0;
+        boolean more = true;
+        while (more) {
+            more = scanner.scanNext();
+            int last = stitched.size() - 1;
+            int start = stitched.start(last);
+            while (next < pieces.size() && pieces.get(next).end <= start) next++;
+            if (!more || next == pieces.size()) continue;
+
+            Chunk chunk = pieces.get(next);
+            int match = find(chunk.tokens, start);
+            if (match < 0) continue;
+            int lineDelta = stitched.line(last) - chunk.tokens.line(match);
+            stitched.truncate(last);
+            stitched.append(chunk.tokens, match, chunk.tokens.size() - match, 0, lineDelta);
+            scanner.resume(stitched, chunk.stop, chunk.stopLine + lineDelta);
+            next++;
+        }
+        return stitched;
+    }
+
+    // The token of the chunk that starts at the given offset, or -1.
+    private static int find(TokenBuffer tokens, int start) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = tokens.start(middle);
+            if (value < start) {
+                low = middle + 1;
+            } else if (value > start) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The tokens starting in [start, end) when scanning from start on line 1, and where
+     * and on which line that scan stopped.
+     */
+    private final class Chunk {
+        final int start;
+        final int end;
+        final ErrorReporter reporter = new ErrorReporter();
+        TokenBuffer tokens;
+        int stop;
+        int stopLine;
+
+        Chunk(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        void scan() {
+            tokens = new TokenBuffer(source, (end - start) / 4);
+            Scanner scanner = new Scanner(source, reporter);
+            scanner.resume(tokens, start, 1);
+            scanner.scanUntil(end);
+            stop = scanner.position();
+            stopLine = scanner.line();
+        }
+    }
+}
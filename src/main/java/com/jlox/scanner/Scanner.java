@@ -1,59 +1,133 @@
 package com.jlox.scanner;
 
 import com.jlox.error.Error;
+import com.jlox.error.ErrorReporter;
 import com.jlox.scanner.Token.TokenType;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.jlox.scanner.Token.TokenType.*;
 
-public class Scanner {
+public class Scanner implements TokenSource {
 
-    private final String source;
+    private final CharSequence source;
+    private final ErrorReporter reporter;
     private int line = 1;
     private int currentLexm = 0;
     private int currentPos = 0;
-    private final List<Token> tokens;
-    private static final HashMap<String, TokenType> keywords;
+    private Token pending;
+    private TokenBuffer buffer;
+    private double number;
+    private static final String[] asciiLexemes = new String[128];
+
+    // Character classes for ASCII, so classifying a character is one array load.
+    private static final byte DIGIT = 1;
+    private static final byte ALPHA = 2;
+    private static final byte[] charClasses = new byte[128];
+
+    // Exact powers of ten; a mantissa below 2^53 divided by one of these rounds
+    // exactly like Double.parseDouble.
+    private static final double[] powersOfTen = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fun", FUN);
-        keywords.put("if", IF);
-        keywords.put("nil", NIL);
-        keywords.put("or", OR);
-        keywords.put("print", PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("this", THIS);
-        keywords.put("true", TRUE);
-        keywords.put("var", VAR);
-        keywords.put("while", WHILE);
-    }
-
-
-    public Scanner(String source) {
+        for (char c = 0; c < asciiLexemes.length; c++) {
+            asciiLexemes[c] = String.valueOf(c).intern();
+        }
+        for (char c = '0'; c <= '9'; c++) charClasses[c] = DIGIT;
+        for (char c = 'a'; c <= 'z'; c++) charClasses[c] = ALPHA;
+        for (char c = 'A'; c <= 'Z'; c++) charClasses[c] = ALPHA;
+        charClasses['_'] = ALPHA;
+    }
+
+
+    public Scanner(CharSequence source) {
+        this(source, Error.console());
+    }
+
+    public Scanner(CharSequence source, ErrorReporter reporter) {
         this.source = source;
-        this.tokens = new ArrayList<>();
+        this.reporter = reporter;
     }
 
     public List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = next();
+            tokens.add(token);
+        } while (token.type() != EOF);
+        return tokens;
+    }
+
+    public TokenBuffer scanBuffer() {
+        TokenBuffer scanned = new TokenBuffer(source);
+        resume(scanned, currentPos, line);
+        while (scanNext()) ;
+        buffer = null;
+        return scanned;
+    }
+
+    /**
+     * Continues scanning into {@code buffer} from {@code position}, which must be where a
+     * token starts or ends, on the given line.
+     */
+    void resume(TokenBuffer buffer, int position, int line) {
+        this.buffer = buffer;
+        this.currentPos = position;
+        this.line = line;
+    }
+
+    /**
+     * Scans until one more token, possibly EOF, has been added to the buffer. Returns
+     * false once that was EOF.
+     */
+    boolean scanNext() {
+        int size = buffer.size();
         while (!end()) {
             currentLexm = currentPos;
             scanToken();
+            if (buffer.size() > size) return true;
         }
         currentLexm = currentPos;
         addToken(EOF);
-        return tokens;
+        return false;
+    }
+
+    /**
+     * Scans into the buffer until reaching {@code limit}; the last token may run past it.
+     */
+    void scanUntil(int limit) {
+        while (currentPos < limit && !end()) {
+            currentLexm = currentPos;
+            scanToken();
+        }
+    }
+
+    int position() {
+        return currentPos;
+    }
+
+    int line() {
+        return line;
+    }
+
+    @Override
+    public Token next() {
+        while (pending == null) {
+            currentLexm = currentPos;
+            if (end()) {
+                addToken(EOF);
+            } else {
+                scanToken();
+            }
+        }
+        Token token = pending;
+        pending = null;
+        return token;
     }
 
     public void addToken(TokenType type) {
@@ -65,8 +139,27 @@ public class Scanner {
     }
 
     public void addToken(TokenType type, Object literal) {
-        String lexm = source.substring(currentLexm, currentPos);
-        tokens.add(new Token(type, lexm, literal, line));
+        if (buffer != null) {
+            buffer.add(type, currentLexm, currentPos - currentLexm, line, number);
+            return;
+        }
+        // Identifiers and keywords carry their text as the literal; strings drop the quotes.
+        String lexm = literal instanceof String text ? text : lexeme();
+        if (type == STRING) {
+            literal = lexm.substring(1, lexm.length() - 1);
+        } else if (type == NUMBER) {
+            literal = number;
+        }
+        pending = new Token(type, lexm, literal, line);
+    }
+
+    // Single-character tokens share one String each instead of decoding the source again.
+    private String lexeme() {
+        if (currentPos - currentLexm == 1) {
+            char c = source.charAt(currentLexm);
+            if (c < asciiLexemes.length) return asciiLexemes[c];
+        }
+        return getSubString();
     }
 
     public void scanToken() {
@@ -135,13 +228,12 @@ public class Scanner {
                         nextChar();
                         break;
                     } else if (peek() == '\0') {
-                        Error.error(line, "Unexpected character.");
+                        reporter.error(line, "Unexpected character.");
                         return;
                     }
                     nextChar();
                 }
-                String stringLiteral = getSubString();
-                addToken(STRING, stringLiteral);
+                addToken(STRING);
                 break;
             default:
                 if (isDigit(c)) {
@@ -152,40 +244,102 @@ public class Scanner {
                         do nextChar();
                         while (isDigit(peek()));
                     }
-                    Double numberLiteral = Double.parseDouble(getSubString());
-                    addToken(NUMBER, numberLiteral);
+                    number = parseNumber(currentLexm, currentPos);
+                    addToken(NUMBER);
                 } else if (isAlpha(c)) {
                     identifier(c);
                 } else {
-                    Error.error(line, "Unexpected character.");
+                    reporter.error(line, "Unexpected character.");
                 }
 
         }
     }
 
-    private boolean isAlpha(char c) {
-        return (c >= 'a' && c <= 'z') ||
-                (c >= 'A' && c <= 'Z') ||
-                c == '_';
+    private static boolean isAlpha(char c) {
+        return c < 128 && charClasses[c] == ALPHA;
     }
 
-    private boolean isDigit(char c) {
-        Pattern pattern = Pattern.compile("\\d");
-        Matcher matcher = pattern.matcher(Character.toString(c));
-        return matcher.find();
+    private static boolean isDigit(char c) {
+        return c < 128 && charClasses[c] == DIGIT;
     }
 
-    private boolean isAlphaNumeric(char c) {
-        return isAlpha(c) || isDigit(c);
+    private static boolean isAlphaNumeric(char c) {
+        return c < 128 && charClasses[c] != 0;
+    }
+
+    private double parseNumber(int start, int end) {
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            digits++;
+            if (fraction) fractionDigits++;
+        }
+        if (digits <= 15) {
+            return mantissa / powersOfTen[fractionDigits];
+        }
+        return Double.parseDouble(substring(start, end));
     }
 
     private void identifier(char c) {
         while (!end() && isAlphaNumeric(peek())) {
             nextChar();
         }
-        String lexm = source.substring(currentLexm, currentPos);
-        TokenType tokenType = keywords.get(lexm) == null ? IDENTIFIER : keywords.get(lexm);
-        addToken(tokenType, lexm);
+        TokenType tokenType = keyword(currentLexm, currentPos - currentLexm);
+        addToken(tokenType, buffer == null ? getSubString() : null);
+    }
+
+    // Keywords are recognised from the source range itself: the first character and the
+    // length narrow it down to at most three candidates, compared character by character.
+    private TokenType keyword(int start, int length) {
+        switch (source.charAt(start)) {
+            case 'a':
+                return checkKeyword(start, length, "and", AND);
+            case 'c':
+                return checkKeyword(start, length, "class", CLASS);
+            case 'e':
+                return checkKeyword(start, length, "else", ELSE);
+            case 'f':
+                if (length == 5) return checkKeyword(start, length, "false", FALSE);
+                if (length == 3 && source.charAt(start + 1) == 'o') return checkKeyword(start, length, "for", FOR);
+                return checkKeyword(start, length, "fun", FUN);
+            case 'i':
+                return checkKeyword(start, length, "if", IF);
+            case 'n':
+                return checkKeyword(start, length, "nil", NIL);
+            case 'o':
+                return checkKeyword(start, length, "or", OR);
+            case 'p':
+                return checkKeyword(start, length, "print", PRINT);
+            case 'r':
+                return checkKeyword(start, length, "return", RETURN);
+            case 's':
+                return checkKeyword(start, length, "super", SUPER);
+            case 't':
+                if (length == 4 && source.charAt(start + 1) == 'h') return checkKeyword(start, length, "this", THIS);
+                return checkKeyword(start, length, "true", TRUE);
+            case 'v':
+                return checkKeyword(start, length, "var", VAR);
+            case 'w':
+                return checkKeyword(start, length, "while", WHILE);
+            default:
+                return IDENTIFIER;
+        }
+    }
+
+    private TokenType checkKeyword(int start, int length, String keyword, TokenType type) {
+        if (length != keyword.length()) return IDENTIFIER;
+        for (int i = 1; i < length; i++) {
+            if (source.charAt(start + i) != keyword.charAt(i)) return IDENTIFIER;
+        }
+        return type;
     }
 
     private char nextChar() {
@@ -239,7 +393,7 @@ public class Scanner {
             nextChar();
         }
         if (depth > 0)
-            Error.error(line, "Unexpected character.");
+            reporter.error(line, "Unexpected character.");
     }
 
     private void skipCommentLine() {
@@ -257,6 +411,10 @@ public class Scanner {
     }
 
     private String getSubString() {
-        return source.substring(currentLexm, currentPos);
+        return substring(currentLexm, currentPos);
+    }
+
+    private String substring(int start, int end) {
+        return source.subSequence(start, end).toString();
     }
 }
@@ -0,0 +1,43 @@
+package com.jlox.scanner;
+
+/**
+ * A range of the source that is only copied out when {@link #toString()} is called.
+ */
+public final class SourceView implements CharSequence {
+
+    private final CharSequence source;
+    private final int offset;
+    private final int length;
+
+    public SourceView(CharSequence source, int offset, int length) {
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index + " of " + length);
+        }
+        return source.charAt(offset + index);
+    }
+
+    @Override
+    public SourceView subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+        }
+        return new SourceView(source, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return source.subSequence(offset, offset + length).toString();
+    }
+}
@@ -0,0 +1,332 @@
+package com.jlox.scanner;
+
+import com.jlox.scanner.Token.TokenType;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays token store filled by {@link Scanner#scanBuffer()}.
+ * <p>
+ * A token is an index into parallel arrays of type ordinals, start offsets, lengths and
+ * lines, so the whole stream costs 13 bytes per token and no objects. Number values go to
+ * a side table that only grows with the number of NUMBER tokens; the k-th entry belongs to
+ * the token at {@code numberTokens[k]}. Lexemes and string literals are {@link SourceView}s
+ * over the source and are only copied when converted to a {@code String}.
+ * <p>
+ * An {@link IncrementalScanner} edits a buffer in place. The arrays keep a gap at the
+ * edit: tokens after it sit at the end of the arrays with their start and line stored
+ * relative to {@code tailStart} and {@code tailLine}, and their number entries at the end
+ * of the side table keyed relative to {@link #size()}. An edit before them then moves
+ * them all by changing two fields, and only the tokens between two successive edits are
+ * ever copied. A buffer that was never edited has its gap at the end.
+ */
+public class TokenBuffer {
+
+    private static final TokenType[] types = TokenType.values();
+    // The lexeme of every type that has only one, shared by all its tokens.
+    private static final String[] fixedLexemes = new String[types.length];
+
+    static {
+        // The scanner gives "{" and "}" each other's type, so braces are read from the source.
+        String[] punctuation = {"(", ")", null, null, ",", ".", "-", "+", ";", "/", "*", "?", ":",
+                "!", "!=", "=", "==", ">", ">=", "<", "<="};
+        System.arraycopy(punctuation, 0, fixedLexemes, 0, punctuation.length);
+        for (int i = TokenType.AND.ordinal(); i <= TokenType.WHILE.ordinal(); i++) {
+            fixedLexemes[i] = types[i].name().toLowerCase();
+        }
+    }
+
+    private CharSequence source;
+    private byte[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int size = 0;
+    // Tokens [0, gap) are at the front of the arrays, tokens [gap, size) at the end.
+    private int gap = 0;
+    private int tailStart = 0;
+    private int tailLine = 0;
+
+    private double[] numbers = new double[16];
+    private int[] numberTokens = new int[16];
+    private int numberHead = 0;
+    private int numberTail = 0;
+
+    TokenBuffer(CharSequence source) {
+        this(source, 1024);
+    }
+
+    TokenBuffer(CharSequence source, int capacity) {
+        this.source = source;
+        capacity = Math.max(capacity, 16);
+        kinds = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+    }
+
+    /**
+     * Adds a token at the gap, which is the end unless the buffer is being edited.
+     */
+    void add(TokenType type, int start, int length, int line, double number) {
+        ensureCapacity(size + 1);
+        if (type == TokenType.NUMBER) addNumber(number);
+        kinds[gap] = (byte) type.ordinal();
+        starts[gap] = start;
+        lengths[gap] = length;
+        lines[gap] = line;
+        gap++;
+        size++;
+    }
+
+    /**
+     * Appends {@code count} tokens of another buffer, which was never edited, starting at
+     * {@code from}, moved by {@code startDelta} characters and {@code lineDelta} lines.
+     */
+    void append(TokenBuffer other, int from, int count, int startDelta, int lineDelta) {
+        ensureCapacity(size + count);
+        System.arraycopy(other.kinds, from, kinds, gap, count);
+        System.arraycopy(other.lengths, from, lengths, gap, count);
+        for (int i = 0; i < count; i++) {
+            starts[gap + i] = other.starts[from + i] + startDelta;
+            lines[gap + i] = other.lines[from + i] + lineDelta;
+        }
+        int slot = Arrays.binarySearch(other.numberTokens, 0, other.numberHead, from);
+        if (slot < 0) slot = -slot - 1;
+        for (; slot < other.numberHead && other.numberTokens[slot] < from + count; slot++) {
+            if (numberHead + numberTail == numbers.length) growNumbers();
+            numbers[numberHead] = other.numbers[slot];
+            numberTokens[numberHead++] = gap + other.numberTokens[slot] - from;
+        }
+        gap += count;
+        size += count;
+    }
+
+    /**
+     * Drops the tokens from {@code size} up to the gap.
+     */
+    void truncate(int size) {
+        removeBeforeGap(gap - size);
+    }
+
+    /**
+     * Moves the gap to {@code index}, copying only the tokens in between.
+     */
+    void moveGap(int index) {
+        int tail = kinds.length - size;
+        if (index < gap) {
+            int count = gap - index;
+            System.arraycopy(kinds, index, kinds, index + tail, count);
+            System.arraycopy(lengths, index, lengths, index + tail, count);
+            for (int i = gap - 1; i >= index; i--) {
+                starts[i + tail] = starts[i] - tailStart;
+                lines[i + tail] = lines[i] - tailLine;
+            }
+            while (numberHead > 0 && numberTokens[numberHead - 1] >= index) {
+                numberHead--;
+                numberTail++;
+                numbers[numbers.length - numberTail] = numbers[numberHead];
+                numberTokens[numbers.length - numberTail] = numberTokens[numberHead] - size;
+            }
+        } else if (index > gap) {
+            int count = index - gap;
+            System.arraycopy(kinds, gap + tail, kinds, gap, count);
+            System.arraycopy(lengths, gap + tail, lengths, gap, count);
+            for (int i = gap; i < index; i++) {
+                starts[i] = starts[i + tail] + tailStart;
+                lines[i] = lines[i + tail] + tailLine;
+            }
+            while (numberTail > 0 && numberTokens[numbers.length - numberTail] + size < index) {
+                numbers[numberHead] = numbers[numbers.length - numberTail];
+                numberTokens[numberHead++] = numberTokens[numbers.length - numberTail] + size;
+                numberTail--;
+            }
+        }
+        gap = index;
+    }
+
+    int gap() {
+        return gap;
+    }
+
+    /**
+     * Removes the last {@code count} tokens before the gap.
+     */
+    void removeBeforeGap(int count) {
+        gap -= count;
+        size -= count;
+        while (numberHead > 0 && numberTokens[numberHead - 1] >= gap) numberHead--;
+    }
+
+    /**
+     * Removes the first {@code count} tokens after the gap.
+     */
+    void removeAfterGap(int count) {
+        int end = gap + count - size;
+        while (numberTail > 0 && numberTokens[numbers.length - numberTail] < end) numberTail--;
+        size -= count;
+    }
+
+    /**
+     * Moves every token after the gap by {@code startDelta} characters and
+     * {@code lineDelta} lines.
+     */
+    void moveTail(int startDelta, int lineDelta) {
+        tailStart += startDelta;
+        tailLine += lineDelta;
+    }
+
+    void setSource(CharSequence source) {
+        this.source = source;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= kinds.length) return;
+        capacity = Math.max(capacity, kinds.length * 2);
+        byte[] grownKinds = new byte[capacity];
+        int[] grownStarts = new int[capacity];
+        int[] grownLengths = new int[capacity];
+        int[] grownLines = new int[capacity];
+        copyAroundGap(kinds, grownKinds, capacity);
+        copyAroundGap(starts, grownStarts, capacity);
+        copyAroundGap(lengths, grownLengths, capacity);
+        copyAroundGap(lines, grownLines, capacity);
+        kinds = grownKinds;
+        starts = grownStarts;
+        lengths = grownLengths;
+        lines = grownLines;
+    }
+
+    // Copies the tokens before the gap to the front of a larger array, the rest to its end.
+    private void copyAroundGap(Object from, Object to, int capacity) {
+        int tail = size - gap;
+        System.arraycopy(from, 0, to, 0, gap);
+        System.arraycopy(from, kinds.length - tail, to, capacity - tail, tail);
+    }
+
+    private void addNumber(double number) {
+        if (numberHead + numberTail == numbers.length) growNumbers();
+        numbers[numberHead] = number;
+        numberTokens[numberHead++] = gap;
+    }
+
+    private void growNumbers() {
+        int capacity = numbers.length * 2;
+        int from = numbers.length - numberTail;
+        int to = capacity - numberTail;
+        double[] grownNumbers = new double[capacity];
+        int[] grownTokens = new int[capacity];
+        System.arraycopy(numbers, 0, grownNumbers, 0, numberHead);
+        System.arraycopy(numberTokens, 0, grownTokens, 0, numberHead);
+        System.arraycopy(numbers, from, grownNumbers, to, numberTail);
+        System.arraycopy(numberTokens, from, grownTokens, to, numberTail);
+        numbers = grownNumbers;
+        numberTokens = grownTokens;
+    }
+
+    public CharSequence source() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return types[kinds[slot(index)]];
+    }
+
+    public int start(int index) {
+        return index < gap ? starts[index] : starts[index + kinds.length - size] + tailStart;
+    }
+
+    public int length(int index) {
+        return lengths[slot(index)];
+    }
+
+    public int line(int index) {
+        return index < gap ? lines[index] : lines[index + kinds.length - size] + tailLine;
+    }
+
+    // Where token index is kept in the arrays.
+    private int slot(int index) {
+        return index < gap ? index : index + kinds.length - size;
+    }
+
+    public CharSequence lexeme(int index) {
+        return new SourceView(source, start(index), length(index));
+    }
+
+    // The lexeme as a String, copied out of the source only for the types that need it.
+    private String lexemeString(int index) {
+        String fixed = fixedLexemes[kinds[slot(index)]];
+        return fixed != null ? fixed : lexeme(index).toString();
+    }
+
+    public double number(int index) {
+        int tail = numbers.length - numberTail;
+        int slot = index < gap
+                ? Arrays.binarySearch(numberTokens, 0, numberHead, index)
+                : Arrays.binarySearch(numberTokens, tail, numbers.length, index - size);
+        if (slot < 0) throw new IllegalArgumentException("Token " + index + " is not a number");
+        return numbers[slot];
+    }
+
+    /**
+     * The literal a {@link Scanner} would have put on the equivalent {@link Token}.
+     */
+    public Object literal(int index) {
+        TokenType type = type(index);
+        switch (type) {
+            case NUMBER:
+                return number(index);
+            case STRING:
+                return new SourceView(source, start(index) + 1, length(index) - 2).toString();
+            case IDENTIFIER:
+            case AND:
+            case CLASS:
+            case ELSE:
+            case FALSE:
+            case FUN:
+            case FOR:
+            case IF:
+            case NIL:
+            case OR:
+            case PRINT:
+            case RETURN:
+            case SUPER:
+            case THIS:
+            case TRUE:
+            case VAR:
+            case WHILE:
+                return lexemeString(index);
+            default:
+                return null;
+        }
+    }
+
+    public Token token(int index) {
+        return new Token(type(index), lexemeString(index), literal(index), line(index));
+    }
+
+    /**
+     * Reads the buffer in order, materializing only the tokens the consumer pulls.
+     */
+    public TokenSource stream() {
+        return new TokenSource() {
+            private int currentPos = 0;
+
+            @Override
+            public Token next() {
+                Token token = token(currentPos);
+                if (currentPos < size - 1) currentPos++;
+                return token;
+            }
+
+            @Override
+            public void skip(int count) {
+                currentPos = Math.min(currentPos + count, size - 1);
+            }
+        };
+    }
+}
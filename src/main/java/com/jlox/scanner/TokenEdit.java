@@ -0,0 +1,11 @@
+package com.jlox.scanner;
+
+/**
+ * The outcome of re-scanning an edit: tokens {@code [start, oldEnd)} of the previous
+ * buffer were replaced by tokens {@code [start, newEnd)} of {@code tokens}, which is
+ * usually the previous buffer edited in place. Tokens before {@code start} are unchanged;
+ * tokens after the replaced range are the old ones moved by {@code newEnd - oldEnd}
+ * indices and {@code lineDelta} lines.
+ */
+public record TokenEdit(TokenBuffer tokens, int start, int oldEnd, int newEnd, int lineDelta) {
+}
@@ -0,0 +1,31 @@
+package com.jlox.scanner;
+
+import java.util.List;
+
+/**
+ * Supplies tokens one at a time. Once the input is exhausted every call returns an
+ * {@link Token.TokenType#EOF} token.
+ */
+public interface TokenSource {
+
+    public Token next();
+
+    /**
+     * Drops the next {@code count} tokens without handing them out.
+     */
+    public default void skip(int count) {
+        for (int i = 0; i < count; i++) next();
+    }
+
+    public static TokenSource of(List<Token> tokens) {
+        return new TokenSource() {
+            private int currentPos = 0;
+
+            @Override
+            public Token next() {
+                if (currentPos < tokens.size()) return tokens.get(currentPos++);
+                return tokens.get(tokens.size() - 1);
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package com.jlox.scanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * UTF-8 bytes presented to the {@link Scanner} as a {@link CharSequence}.
+ * <p>
+ * Everything Lox gives meaning to is ASCII, so the scanner can walk the raw bytes:
+ * {@link #charAt(int)} returns one byte per index and multi-byte characters only ever
+ * show up inside strings and comments, where they are skipped over untouched. Offsets
+ * are therefore byte offsets. {@link #subSequence(int, int)} is a view and bytes are only
+ * decoded when {@link #toString()} is called, i.e. when a token actually needs its text.
+ */
+public final class Utf8Source implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    public Utf8Source(ByteBuffer bytes) {
+        this(bytes, 0, bytes.limit());
+    }
+
+    private Utf8Source(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static Utf8Source map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to map (" + size + " bytes)");
+            }
+            return new Utf8Source(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * The raw bytes of this sequence, as a read-only view.
+     */
+    public ByteBuffer bytes() {
+        return bytes.slice(offset, length).asReadOnlyBuffer();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public Utf8Source subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+        }
+        return new Utf8Source(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] copy = new byte[length];
+        bytes.get(offset, copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+}
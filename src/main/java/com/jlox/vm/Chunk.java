@@ -0,0 +1,100 @@
+package com.jlox.vm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Compiled bytecode with its constant pools. Numbers get their own {@code double[]}
+ * pool so loading one never touches a boxed value.
+ */
+public class Chunk {
+
+    private static final int MAX_INDEX = 0xFFFF;
+
+    private byte[] code = new byte[64];
+    private int[] lines = new int[64];
+    private int count = 0;
+    private int maxStack = 0;
+
+    private double[] numbers = new double[8];
+    private int numberCount = 0;
+    private Object[] constants = new Object[8];
+    private int constantCount = 0;
+
+    private final HashMap<Long, Integer> numberIndex = new HashMap<>();
+    private final HashMap<Object, Integer> constantIndex = new HashMap<>();
+
+    public void write(byte value, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = value;
+        lines[count] = line;
+        count++;
+    }
+
+    public void writeShort(int value, int line) {
+        write((byte) (value >>> 8), line);
+        write((byte) value, line);
+    }
+
+    public void patchShort(int offset, int value) {
+        code[offset] = (byte) (value >>> 8);
+        code[offset + 1] = (byte) value;
+    }
+
+    public void reserveStack(int depth) {
+        if (depth > maxStack) maxStack = depth;
+    }
+
+    public int addNumber(double value) {
+        return numberIndex.computeIfAbsent(Double.doubleToLongBits(value), bits -> {
+            checkIndex(numberCount, "Too many number constants in one chunk.");
+            if (numberCount == numbers.length) numbers = Arrays.copyOf(numbers, numberCount * 2);
+            numbers[numberCount] = value;
+            return numberCount++;
+        });
+    }
+
+    public int addConstant(Object value) {
+        return constantIndex.computeIfAbsent(value, key -> {
+            checkIndex(constantCount, "Too many constants in one chunk.");
+            if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+            constants[constantCount] = value;
+            return constantCount++;
+        });
+    }
+
+    private static void checkIndex(int index, String message) {
+        if (index > MAX_INDEX) throw new IllegalStateException(message);
+    }
+
+    public byte[] code() {
+        return code;
+    }
+
+    public int[] lines() {
+        return lines;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int maxStack() {
+        return maxStack;
+    }
+
+    public double[] numbers() {
+        return numbers;
+    }
+
+    public Object[] constants() {
+        return constants;
+    }
+
+    public int readShort(int offset) {
+        return ((code[offset] & 0xFF) << 8) | (code[offset + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,232 @@
+package com.jlox.vm;
+
+import com.jlox.error.CompileError;
+import com.jlox.parser.*;
+import com.jlox.scanner.Token;
+
+/**
+ * Lowers an {@link Expression} tree into a linear {@link Chunk}, tracking the deepest
+ * stack the code can reach so the {@link VM} can size its stack once up front.
+ * <p>
+ * Like the interpreter, an arithmetic or comparison operator fails on a left operand of
+ * the wrong type before its right operand runs, so the right operand's own errors cannot
+ * come first. The left operand is checked where that is not known at compile time.
+ * <p>
+ * An expression with more than 65536 distinct constants of a kind, or a branch longer
+ * than 65535 bytes, fails with a {@link CompileError}.
+ */
+public class Compiler implements ExpressionVisitor<Void> {
+
+    private Chunk chunk;
+    private int line = 1;
+    private int depth = 0;
+
+    public Chunk compile(Expression expression) {
+        chunk = new Chunk();
+        depth = 0;
+        expression.accept(this);
+        emit(OpCode.RETURN);
+        return chunk;
+    }
+
+    @Override
+    public Void visit(Binary expression) {
+        Token operator = expression.operator();
+        expression.left().accept(this);
+        if (operator.type() == Token.TokenType.COMMA) {
+            line = operator.line();
+            emit(OpCode.POP);
+            pop();
+            expression.right().accept(this);
+            return null;
+        }
+        checkLeft(operator, expression.left());
+        expression.right().accept(this);
+        line = operator.line();
+        switch (operator.type()) {
+            case PLUS:
+                emit(OpCode.ADD);
+                break;
+            case MINUS:
+                emit(OpCode.SUBTRACT);
+                break;
+            case STAR:
+                emit(OpCode.MULTIPLY);
+                break;
+            case SLASH:
+                emit(OpCode.DIVIDE);
+                break;
+            case EQUAL_EQUAL:
+                emit(OpCode.EQUAL);
+                break;
+            case BANG_EQUAL:
+                emit(OpCode.NOT_EQUAL);
+                break;
+            case GREATER:
+                emit(OpCode.GREATER);
+                break;
+            case GREATER_EQUAL:
+                emit(OpCode.GREATER_EQUAL);
+                break;
+            case LESS:
+                emit(OpCode.LESS);
+                break;
+            case LESS_EQUAL:
+                emit(OpCode.LESS_EQUAL);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported binary operator " + operator.type());
+        }
+        pop();
+        return null;
+    }
+
+    @Override
+    public Void visit(Literal expression) {
+        Object value = expression.value();
+        if (value == null) {
+            emit(OpCode.NIL);
+        } else if (value instanceof Boolean bool) {
+            emit(bool ? OpCode.TRUE : OpCode.FALSE);
+        } else if (value instanceof Double number) {
+            emit(OpCode.NUMBER);
+            chunk.writeShort(number(number), line);
+        } else {
+            emit(OpCode.CONSTANT);
+            chunk.writeShort(constant(value), line);
+        }
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visit(Variable expression) {
+        line = expression.name().line();
+        emit(OpCode.GET_VARIABLE);
+        chunk.writeShort(constant(expression.name().lexeme()), line);
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visit(Unary expression) {
+        Token operator = expression.operator();
+        expression.operand().accept(this);
+        line = operator.line();
+        switch (operator.type()) {
+            case MINUS:
+                emit(OpCode.NEGATE);
+                break;
+            case BANG:
+                emit(OpCode.NOT);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported unary operator " + operator.type());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Grouping expression) {
+        return expression.expression().accept(this);
+    }
+
+    @Override
+    public Void visit(Ternary expression) {
+        expression.left().accept(this);
+        int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+        pop();
+        expression.middle().accept(this);
+        int endJump = emitJump(OpCode.JUMP);
+        // Only one branch runs, so the else branch starts from the depth before the middle one.
+        pop();
+        patchJump(elseJump);
+        expression.right().accept(this);
+        patchJump(endJump);
+        return null;
+    }
+
+    private void checkLeft(Token operator, Expression left) {
+        switch (operator.type()) {
+            case PLUS:
+                if (isNumber(left) || isString(left)) return;
+                line = operator.line();
+                emit(OpCode.CHECK_ADD);
+                break;
+            case MINUS:
+            case STAR:
+            case SLASH:
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                if (isNumber(left)) return;
+                line = operator.line();
+                emit(OpCode.CHECK_NUMBER);
+                break;
+        }
+    }
+
+    // Whether the code for the expression can only leave a number, if it succeeds.
+    private static boolean isNumber(Expression expression) {
+        while (expression instanceof Grouping grouping) expression = grouping.expression();
+        if (expression instanceof Literal literal) return literal.value() instanceof Double;
+        if (expression instanceof Unary unary) return unary.operator().type() == Token.TokenType.MINUS;
+        if (expression instanceof Binary binary) {
+            switch (binary.operator().type()) {
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isString(Expression expression) {
+        while (expression instanceof Grouping grouping) expression = grouping.expression();
+        return expression instanceof Literal literal && literal.value() instanceof String;
+    }
+
+    private void push() {
+        depth++;
+        chunk.reserveStack(depth);
+    }
+
+    private void pop() {
+        depth--;
+    }
+
+    private void emit(byte opCode) {
+        chunk.write(opCode, line);
+    }
+
+    // A constant pool that is full is the script's problem, not the compiler's.
+    private int number(double value) {
+        try {
+            return chunk.addNumber(value);
+        } catch (IllegalStateException e) {
+            throw new CompileError(line, e.getMessage());
+        }
+    }
+
+    private int constant(Object value) {
+        try {
+            return chunk.addConstant(value);
+        } catch (IllegalStateException e) {
+            throw new CompileError(line, e.getMessage());
+        }
+    }
+
+    private int emitJump(byte opCode) {
+        emit(opCode);
+        chunk.writeShort(0xFFFF, line);
+        return chunk.count() - 2;
+    }
+
+    private void patchJump(int offset) {
+        int jump = chunk.count() - offset - 2;
+        if (jump > 0xFFFF) throw new CompileError(line, "Too much code to jump over.");
+        chunk.patchShort(offset, jump);
+    }
+}
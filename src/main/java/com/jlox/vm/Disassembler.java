@@ -0,0 +1,47 @@
+package com.jlox.vm;
+
+public class Disassembler {
+
+    public static String disassemble(Chunk chunk) {
+        StringBuilder out = new StringBuilder();
+        int offset = 0;
+        while (offset < chunk.count()) {
+            offset = instruction(chunk, offset, out);
+        }
+        return out.toString();
+    }
+
+    public static int instruction(Chunk chunk, int offset, StringBuilder out) {
+        out.append(String.format("%04d ", offset));
+        if (offset > 0 && chunk.lines()[offset] == chunk.lines()[offset - 1]) {
+            out.append("   | ");
+        } else {
+            out.append(String.format("%4d ", chunk.lines()[offset]));
+        }
+
+        byte opCode = chunk.code()[offset];
+        String name = OpCode.name(opCode);
+        switch (opCode) {
+            case OpCode.NUMBER: {
+                int index = chunk.readShort(offset + 1);
+                out.append(String.format("%-16s %4d '%s'%n", name, index, chunk.numbers()[index]));
+                return offset + 3;
+            }
+            case OpCode.CONSTANT:
+            case OpCode.GET_VARIABLE: {
+                int index = chunk.readShort(offset + 1);
+                out.append(String.format("%-16s %4d '%s'%n", name, index, chunk.constants()[index]));
+                return offset + 3;
+            }
+            case OpCode.JUMP:
+            case OpCode.JUMP_IF_FALSE: {
+                int jump = chunk.readShort(offset + 1);
+                out.append(String.format("%-16s %4d -> %d%n", name, offset, offset + 3 + jump));
+                return offset + 3;
+            }
+            default:
+                out.append(name).append(System.lineSeparator());
+                return offset + 1;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.jlox.vm;
+
+public final class OpCode {
+    // Operands are big-endian unsigned shorts; none of the other opcodes take any.
+    public static final byte NUMBER = 0;        // index into Chunk.numbers
+    public static final byte CONSTANT = 1;      // index into Chunk.constants
+    public static final byte NIL = 2;
+    public static final byte TRUE = 3;
+    public static final byte FALSE = 4;
+    public static final byte POP = 5;
+    public static final byte ADD = 6;
+    public static final byte SUBTRACT = 7;
+    public static final byte MULTIPLY = 8;
+    public static final byte DIVIDE = 9;
+    public static final byte NEGATE = 10;
+    public static final byte NOT = 11;
+    public static final byte EQUAL = 12;
+    public static final byte NOT_EQUAL = 13;
+    public static final byte GREATER = 14;
+    public static final byte GREATER_EQUAL = 15;
+    public static final byte LESS = 16;
+    public static final byte LESS_EQUAL = 17;
+    public static final byte JUMP = 18;          // forward offset
+    public static final byte JUMP_IF_FALSE = 19; // forward offset, pops the condition
+    public static final byte RETURN = 20;
+    public static final byte GET_VARIABLE = 21;  // index into Chunk.constants of the name
+    public static final byte CHECK_NUMBER = 22;  // leaves the left operand in place
+    public static final byte CHECK_ADD = 23;     // leaves the left operand in place
+
+    private static final String[] names = {
+            "NUMBER", "CONSTANT", "NIL", "TRUE", "FALSE", "POP",
+            "ADD", "SUBTRACT", "MULTIPLY", "DIVIDE", "NEGATE", "NOT",
+            "EQUAL", "NOT_EQUAL", "GREATER", "GREATER_EQUAL", "LESS", "LESS_EQUAL",
+            "JUMP", "JUMP_IF_FALSE", "RETURN", "GET_VARIABLE", "CHECK_NUMBER", "CHECK_ADD"
+    };
+
+    private OpCode() {
+    }
+
+    public static String name(byte opCode) {
+        if (opCode < 0 || opCode >= names.length) return "UNKNOWN " + opCode;
+        return names[opCode];
+    }
+}
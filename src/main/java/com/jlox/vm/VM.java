@@ -0,0 +1,200 @@
+package com.jlox.vm;
+
+import com.jlox.error.Error;
+import com.jlox.error.RuntimeError;
+import com.jlox.interp.Interpreter;
+
+import java.util.Objects;
+
+/**
+ * Stack machine for {@link Chunk}s.
+ * <p>
+ * Numbers live in the primitive {@code stack} array; {@code refs} holds the value of
+ * every other slot and is {@code null} exactly when the slot is a number. Lox {@code nil}
+ * is represented by the {@link #NIL} sentinel so it cannot be mistaken for a number.
+ * String {@code +} keeps appending to the {@link StringBuilder} produced by the previous
+ * {@code +}, which is only turned into a {@code String} when something compares or returns it.
+ */
+public class VM {
+
+    private static final Object NIL = new Object();
+
+    private double[] stack = new double[64];
+    private Object[] refs = new Object[64];
+
+    public void interpret(Chunk chunk) {
+        try {
+            System.out.println(Interpreter.stringify(run(chunk)));
+        } catch (RuntimeError error) {
+            Error.runtimeError(error);
+        }
+    }
+
+    public Object run(Chunk chunk) {
+        if (stack.length < chunk.maxStack()) {
+            stack = new double[chunk.maxStack()];
+            refs = new Object[chunk.maxStack()];
+        }
+        double[] stack = this.stack;
+        Object[] refs = this.refs;
+        byte[] code = chunk.code();
+        double[] numbers = chunk.numbers();
+        Object[] constants = chunk.constants();
+        int ip = 0;
+        int sp = 0;
+
+        for (; ; ) {
+            byte instruction = code[ip++];
+            switch (instruction) {
+                case OpCode.NUMBER:
+                    stack[sp] = numbers[((code[ip] & 0xFF) << 8) | (code[ip + 1] & 0xFF)];
+                    refs[sp++] = null;
+                    ip += 2;
+                    break;
+                case OpCode.CONSTANT:
+                    refs[sp++] = constants[((code[ip] & 0xFF) << 8) | (code[ip + 1] & 0xFF)];
+                    ip += 2;
+                    break;
+                case OpCode.GET_VARIABLE:
+                    // Nothing binds variables yet.
+                    throw error(chunk, ip, "Undefined variable '"
+                            + constants[((code[ip] & 0xFF) << 8) | (code[ip + 1] & 0xFF)] + "'.");
+                case OpCode.NIL:
+                    refs[sp++] = NIL;
+                    break;
+                case OpCode.TRUE:
+                    refs[sp++] = Boolean.TRUE;
+                    break;
+                case OpCode.FALSE:
+                    refs[sp++] = Boolean.FALSE;
+                    break;
+                case OpCode.POP:
+                    refs[--sp] = null;
+                    break;
+                case OpCode.ADD:
+                    sp--;
+                    if (refs[sp - 1] == null && refs[sp] == null) {
+                        stack[sp - 1] += stack[sp];
+                    } else if (refs[sp - 1] instanceof CharSequence left
+                            && refs[sp] instanceof CharSequence right) {
+                        StringBuilder builder;
+                        if (left instanceof StringBuilder text) {
+                            builder = text;
+                        } else {
+                            builder = new StringBuilder(left.length() + right.length()).append(left);
+                        }
+                        refs[sp - 1] = builder.append(right);
+                        refs[sp] = null;
+                    } else {
+                        throw error(chunk, ip, "Operands must be two numbers or two strings.");
+                    }
+                    break;
+                case OpCode.SUBTRACT:
+                    sp = checkNumbers(chunk, ip, sp);
+                    stack[sp - 1] -= stack[sp];
+                    break;
+                case OpCode.MULTIPLY:
+                    sp = checkNumbers(chunk, ip, sp);
+                    stack[sp - 1] *= stack[sp];
+                    break;
+                case OpCode.DIVIDE:
+                    sp = checkNumbers(chunk, ip, sp);
+                    stack[sp - 1] /= stack[sp];
+                    break;
+                case OpCode.NEGATE:
+                    if (refs[sp - 1] != null) throw error(chunk, ip, "Operand must be a number.");
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+                case OpCode.NOT:
+                    refs[sp - 1] = !isTruthy(sp - 1);
+                    break;
+                case OpCode.EQUAL:
+                    sp--;
+                    refs[sp - 1] = isEqual(sp - 1, sp);
+                    refs[sp] = null;
+                    break;
+                case OpCode.NOT_EQUAL:
+                    sp--;
+                    refs[sp - 1] = !isEqual(sp - 1, sp);
+                    refs[sp] = null;
+                    break;
+                case OpCode.GREATER:
+                    sp = checkNumbers(chunk, ip, sp);
+                    refs[sp - 1] = stack[sp - 1] > stack[sp];
+                    break;
+                case OpCode.GREATER_EQUAL:
+                    sp = checkNumbers(chunk, ip, sp);
+                    refs[sp - 1] = stack[sp - 1] >= stack[sp];
+                    break;
+                case OpCode.LESS:
+                    sp = checkNumbers(chunk, ip, sp);
+                    refs[sp - 1] = stack[sp - 1] < stack[sp];
+                    break;
+                case OpCode.LESS_EQUAL:
+                    sp = checkNumbers(chunk, ip, sp);
+                    refs[sp - 1] = stack[sp - 1] <= stack[sp];
+                    break;
+                case OpCode.CHECK_NUMBER:
+                    if (refs[sp - 1] != null) throw error(chunk, ip, "Operands must be numbers.");
+                    break;
+                case OpCode.CHECK_ADD:
+                    if (refs[sp - 1] != null && !(refs[sp - 1] instanceof CharSequence)) {
+                        throw error(chunk, ip, "Operands must be two numbers or two strings.");
+                    }
+                    break;
+                case OpCode.JUMP:
+                    ip += (((code[ip] & 0xFF) << 8) | (code[ip + 1] & 0xFF)) + 2;
+                    break;
+                case OpCode.JUMP_IF_FALSE: {
+                    int offset = ((code[ip] & 0xFF) << 8) | (code[ip + 1] & 0xFF);
+                    ip += 2;
+                    sp--;
+                    if (!isTruthy(sp)) ip += offset;
+                    refs[sp] = null;
+                    break;
+                }
+                case OpCode.RETURN: {
+                    Object result = value(sp - 1);
+                    refs[sp - 1] = null;
+                    return result;
+                }
+                default:
+                    throw error(chunk, ip, "Unknown opcode " + instruction + ".");
+            }
+        }
+    }
+
+    private int checkNumbers(Chunk chunk, int ip, int sp) {
+        if (refs[sp - 2] != null || refs[sp - 1] != null) {
+            throw error(chunk, ip, "Operands must be numbers.");
+        }
+        return sp - 1;
+    }
+
+    private boolean isTruthy(int slot) {
+        Object ref = refs[slot];
+        if (ref == null) return true;
+        if (ref == NIL) return false;
+        if (ref instanceof Boolean value) return value;
+        return true;
+    }
+
+    private boolean isEqual(int left, int right) {
+        if (refs[left] == null || refs[right] == null) {
+            return refs[left] == refs[right] && Double.compare(stack[left], stack[right]) == 0;
+        }
+        return Objects.equals(value(left), value(right));
+    }
+
+    private Object value(int slot) {
+        Object ref = refs[slot];
+        if (ref == null) return stack[slot];
+        if (ref == NIL) return null;
+        if (ref instanceof StringBuilder text) return text.toString();
+        return ref;
+    }
+
+    private static RuntimeError error(Chunk chunk, int ip, String message) {
+        return new RuntimeError(chunk.lines()[ip - 1], message);
+    }
+}
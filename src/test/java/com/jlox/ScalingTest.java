@@ -0,0 +1,155 @@
+package com.jlox;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.parser.AstPrinter;
+import com.jlox.parser.Expression;
+import com.jlox.parser.Parser;
+import com.jlox.parser.PrattParser;
+import com.jlox.scanner.Scanner;
+import com.jlox.scanner.TokenBuffer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs the scan, parse and print pipeline on generated sources of doubling size and
+ * fails when its cost grows faster than linearly, for the regressions that only show on
+ * large inputs: copying strings per node, recursion that goes quadratic, rescanning.
+ * <p>
+ * The growth of a case is the slope of a least-squares line through its points on a
+ * log-log scale, 1 for linear and 2 for quadratic. Allocated bytes are counted exactly,
+ * so they carry the tight bound. Time is the fastest of several runs and still noisy, so
+ * that test is tagged {@code timing} and can be left out with {@code -PexcludeTags=timing}.
+ */
+class ScalingTest {
+
+    private static final double MAX_ALLOCATION_SLOPE = 1.1;
+    private static final double MAX_TIME_SLOPE = 1.35;
+    private static final int SMALLEST = 1 << 12;
+    private static final int SIZES = 5;
+    private static final int WARMUP = 5;
+    private static final int TIMED_RUNS = 7;
+
+    private record Case(String name, SourceGenerator.Shape shape, boolean pratt, boolean deep) {
+    }
+
+    private static final List<Case> CASES = List.of(
+            new Case("balanced", shape(SourceGenerator.Shape.ARITHMETIC, 0, 0), true, false),
+            new Case("mixed", shape(SourceGenerator.Shape.MIXED, 0.05, 0.2), true, false),
+            new Case("comments", shape(SourceGenerator.Shape.ARITHMETIC, 1, 0), true, false),
+            new Case("strings", shape(SourceGenerator.Shape.MIXED, 0, 0.9), true, false),
+            new Case("deep", shape(SourceGenerator.Shape.MIXED, 0.05, 0.2), true, true),
+            new Case("balanced/descent", shape(SourceGenerator.Shape.MIXED, 0.05, 0.2), false, false),
+            new Case("deep/descent", shape(SourceGenerator.Shape.MIXED, 0.05, 0.2), false, true));
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void allocationGrowsLinearly() throws InterruptedException {
+        check(false, MAX_ALLOCATION_SLOPE);
+    }
+
+    @Test
+    @Tag("timing")
+    void timeGrowsLinearly() throws InterruptedException {
+        check(true, MAX_TIME_SLOPE);
+    }
+
+    private static SourceGenerator.Shape shape(int[] weights, double commentDensity, double stringRatio) {
+        return new SourceGenerator.Shape(0, 0, weights, commentDensity, stringRatio);
+    }
+
+    // The deep cases recurse once per level in the generator and the recursive-descent parser.
+    private void check(boolean time, double maxSlope) throws InterruptedException {
+        StringBuilder report = new StringBuilder();
+        boolean[] passed = {true};
+        Throwable[] failure = {null};
+        Thread thread = new Thread(null, () -> {
+            try {
+                for (Case c : CASES) {
+                    double slope = slope(c, time, report);
+                    report.append(String.format("%-18s n^%.2f%n", c.name(), slope));
+                    passed[0] &= slope <= maxSlope;
+                }
+            } catch (Throwable t) {
+                failure[0] = t;
+            }
+        }, "scaling", 1L << 30);
+        thread.start();
+        thread.join();
+        System.out.print(report);
+        if (failure[0] != null) fail("The pipeline failed:\n" + report, failure[0]);
+        assertTrue(passed[0], () -> (time ? "Time" : "Allocation") + " grows faster than n^" + maxSlope
+                + ":\n" + report);
+    }
+
+    private double slope(Case c, boolean time, StringBuilder report) {
+        String[] sources = new String[SIZES];
+        for (int i = 0; i < SIZES; i++) {
+            int leaves = SMALLEST << i;
+            // The deep shapes put a quarter of the leaves on one path.
+            SourceGenerator.Shape shape = c.shape().withLeaves(leaves).withSpine(c.deep() ? leaves / 4 : 0);
+            sources[i] = SourceGenerator.generate(shape, 42);
+        }
+        // Compiled code for every size first, or the small ones are measured interpreted.
+        for (int run = 0; run < WARMUP; run++) {
+            for (String source : sources) pipeline(source, c.pratt());
+        }
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < SIZES; i++) {
+            long cost = measure(sources[i], c.pratt(), time);
+            report.append(String.format("%-18s %9d %10d %14d%n", c.name(), SMALLEST << i, sources[i].length(), cost));
+            points.add(new double[]{Math.log(SMALLEST << i), Math.log(cost)});
+        }
+        return slope(points);
+    }
+
+    private long measure(String source, boolean pratt, boolean time) {
+        // Allocation only varies while the JIT is still at work; time varies with everything.
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < (time ? TIMED_RUNS : 2); run++) {
+            if (time) System.gc();
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            pipeline(source, pratt);
+            long cost = time ? System.nanoTime() - start : threads.getCurrentThreadAllocatedBytes() - bytes;
+            best = Math.min(best, cost);
+        }
+        return best;
+    }
+
+    private static String pipeline(String source, boolean pratt) {
+        ErrorReporter reporter = new ErrorReporter(false);
+        TokenBuffer tokens = new Scanner(source, reporter).scanBuffer();
+        Expression expression = pratt
+                ? new PrattParser(tokens.stream(), reporter).parse()
+                : new Parser(tokens.stream(), reporter).parse();
+        if (expression == null) {
+            throw new IllegalStateException("Generated source does not parse: " + reporter.getDiagnostics());
+        }
+        return new AstPrinter().print(expression);
+    }
+
+    // Least squares over (log size, log cost) pairs.
+    private static double slope(List<double[]> points) {
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        for (double[] point : points) {
+            sumX += point[0];
+            sumY += point[1];
+            sumXX += point[0] * point[0];
+            sumXY += point[0] * point[1];
+        }
+        int n = points.size();
+        return (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+    }
+}
@@ -0,0 +1,167 @@
+package com.jlox;
+
+import java.util.Random;
+
+/**
+ * Generates a random Lox expression that both parsers accept, of a given shape.
+ * <p>
+ * Every operator node is parenthesized, so the output parses the same whatever the
+ * precedence, and unary minus only appears where the recursive-descent parser takes it,
+ * as the right operand of {@code + - * /}. The same seed gives the same source.
+ */
+public final class SourceGenerator {
+
+    static final String[] OPERATORS = {
+            "+", "-", "*", "/", ">", ">=", "<", "<=", "==", "!=", ",", "?:", "!", "neg"
+    };
+
+    /**
+     * What to generate.
+     *
+     * @param leaves         literals in the expression
+     * @param spine          operators on one path down from the root; the other leaves hang
+     *                       off it in balanced subtrees, so this sets the nesting depth. Zero
+     *                       gives a balanced tree
+     * @param weights        relative frequency of each of {@link #OPERATORS}, in that order
+     * @param commentDensity chance of a comment after each operator
+     * @param stringRatio    share of the literals that are strings rather than numbers
+     */
+    public record Shape(int leaves, int spine, int[] weights, double commentDensity, double stringRatio) {
+
+        public static final int[] ARITHMETIC = {4, 4, 4, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1};
+        public static final int[] MIXED = {4, 3, 3, 3, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+
+        public Shape {
+            if (weights.length != OPERATORS.length) {
+                throw new IllegalArgumentException("Expected " + OPERATORS.length + " operator weights");
+            }
+        }
+
+        public Shape withLeaves(int leaves) {
+            return new Shape(leaves, spine, weights, commentDensity, stringRatio);
+        }
+
+        public Shape withSpine(int spine) {
+            return new Shape(leaves, spine, weights, commentDensity, stringRatio);
+        }
+    }
+
+    private final Shape shape;
+    private final Random random;
+    private final int totalWeight;
+    private final StringBuilder out = new StringBuilder();
+
+    private SourceGenerator(Shape shape, long seed) {
+        this.shape = shape;
+        this.random = new Random(seed);
+        int total = 0;
+        for (int weight : shape.weights()) total += weight;
+        this.totalWeight = total;
+    }
+
+    public static String generate(Shape shape, long seed) {
+        SourceGenerator generator = new SourceGenerator(shape, seed);
+        generator.expression(Math.max(shape.leaves(), 1), shape.spine(), false);
+        return generator.out.append('\n').toString();
+    }
+
+    // Recurses once per level, so a long spine needs a thread with a large stack.
+    private void expression(int leaves, int spine, boolean negatable) {
+        if (leaves == 1 || totalWeight == 0) {
+            literal();
+            return;
+        }
+        String operator = operator();
+        if (operator.equals("neg") && !negatable) operator = "!";
+        if (operator.equals("!")) {
+            out.append("(!");
+            expression(leaves, spine - 1, false);
+            out.append(')');
+            return;
+        }
+        if (operator.equals("neg")) {
+            out.append('-');
+            expression(leaves, spine - 1, false);
+            return;
+        }
+
+        int parts = operator.equals("?:") ? 3 : 2;
+        int spineSide = spine > 0 ? random.nextInt(parts) : -1;
+        int[] split = split(leaves, parts, spine, spineSide);
+        out.append('(');
+        for (int i = 0; i < parts; i++) {
+            if (i > 0) {
+                out.append(' ').append(operator.equals("?:") ? (i == 1 ? "?" : ":") : operator).append(' ');
+                comment();
+            }
+            boolean arithmetic = i == 1 && operator.length() == 1 && "+-*/".contains(operator);
+            expression(split[i], i == spineSide ? spine - 1 : 0, arithmetic);
+        }
+        out.append(')');
+    }
+
+    // On a spine every other operand gets an even share of what the spine has left to
+    // place and the spine keeps the rest; otherwise the leaves are split about evenly.
+    private int[] split(int leaves, int parts, int spine, int spineSide) {
+        int[] split = new int[parts];
+        if (leaves < parts) {
+            // Too few leaves for every operand: each gets one, a few more in total.
+            for (int i = 0; i < parts; i++) split[i] = 1;
+            return split;
+        }
+        int rest = leaves;
+        for (int i = 0; i < parts; i++) {
+            if (i == spineSide) continue;
+            int share;
+            if (spine > 0) {
+                share = Math.max(1, Math.min((leaves - 1) / (spine * (parts - 1)), leaves / parts));
+            } else {
+                share = leaves / parts;
+                if (share >= 4) share += random.nextInt(share / 2) - share / 4;
+            }
+            split[i] = share;
+            rest -= share;
+        }
+        if (spineSide >= 0) {
+            split[spineSide] = rest;
+        } else {
+            split[parts - 1] += rest;
+        }
+        return split;
+    }
+
+    private String operator() {
+        int pick = random.nextInt(totalWeight);
+        for (int i = 0; i < OPERATORS.length; i++) {
+            pick -= shape.weights()[i];
+            if (pick < 0) return OPERATORS[i];
+        }
+        return OPERATORS[0];
+    }
+
+    private void literal() {
+        if (random.nextDouble() < shape.stringRatio()) {
+            out.append("\"s").append(random.nextInt(1000)).append('"');
+            return;
+        }
+        switch (random.nextInt(16)) {
+            case 0:
+                out.append("true");
+                break;
+            case 1:
+                out.append("nil");
+                break;
+            default:
+                out.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+        }
+    }
+
+    private void comment() {
+        if (random.nextDouble() >= shape.commentDensity()) return;
+        if (random.nextBoolean()) {
+            out.append("/* note ").append(random.nextInt(100)).append(" */ ");
+        } else {
+            out.append("// note ").append(random.nextInt(100)).append('\n');
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.jlox.interp;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.error.RuntimeError;
+import com.jlox.parser.Expression;
+import com.jlox.parser.PrattParser;
+import com.jlox.scanner.Scanner;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Differential test: row {@code i} of a {@link ColumnEvaluator} must be what the
+ * {@link Interpreter} computes with every variable replaced by row {@code i} of its column.
+ */
+class ColumnEvaluatorTest {
+
+    private static final List<String> COLUMNS = List.of("x", "y");
+
+    @Test
+    void rowsMatchTheInterpreter() {
+        String[] sources = {
+                "x + y * 2 - x / 4",
+                "(x < y) ? x : y",
+                "x ? x : y",
+                "(x + 1) ? (x ? y : x) : 3",
+                "(x - y) ? (x > y) : (y >= 2)",
+                "!(x > 1) == (y <= 2)",
+                "(x == y) != !(x != 2)",
+                "1 ? x * y : 2",
+                "false ? x : (true ? y : x)",
+                "((x < 2) ? (y > x) : (!(y > x))) ? x + y : x - -y",
+        };
+        Random random = new Random(21);
+        double[] x = new double[3000];
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = random.nextInt(4) * 0.5;
+            y[i] = random.nextInt(4) * 0.5;
+        }
+        for (String source : sources) {
+            ColumnEvaluator evaluator = new ColumnEvaluator(parse(source), COLUMNS);
+            double[] numbers = evaluator.isPredicate() ? null : evaluator.evaluate(x, y);
+            boolean[] booleans = evaluator.isPredicate() ? evaluator.select(x, y) : null;
+            for (int i = 0; i < x.length; i++) {
+                String row = source.replace("x", "(" + x[i] + ")").replace("y", "(" + y[i] + ")");
+                Object expected = new Interpreter().evaluate(parse(row));
+                Object actual = numbers != null ? (Object) numbers[i] : (Object) booleans[i];
+                assertEquals(expected, actual, row);
+            }
+        }
+    }
+
+    @Test
+    void checksTheBranchANumberConditionSkips() {
+        assertThrows(RuntimeError.class, () -> new ColumnEvaluator(parse("x ? x : (1 - -true)"), COLUMNS));
+        assertThrows(RuntimeError.class, () -> new ColumnEvaluator(parse("x ? x : (true + y)"), COLUMNS));
+        assertThrows(RuntimeError.class, () -> new ColumnEvaluator(parse("x ? x : z"), COLUMNS));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ColumnEvaluator(parse("x ? x : \"s\""), COLUMNS));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ColumnEvaluator(parse("x ? x : (x < y)"), COLUMNS));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ColumnEvaluator(parse("x ? x : nil"), COLUMNS));
+    }
+
+    private static Expression parse(String source) {
+        ErrorReporter reporter = new ErrorReporter();
+        Expression expression = new PrattParser(new Scanner(source, reporter).scanBuffer(), reporter).parse();
+        assertEquals(0, reporter.errorCount(), source);
+        return expression;
+    }
+}
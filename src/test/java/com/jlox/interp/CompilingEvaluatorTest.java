@@ -0,0 +1,83 @@
+package com.jlox.interp;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.parser.Expression;
+import com.jlox.parser.NodeCounter;
+import com.jlox.parser.PrattParser;
+import com.jlox.scanner.Scanner;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompilingEvaluatorTest {
+
+    @Test
+    void compilesOnceTheThresholdIsReached() {
+        CompilingEvaluator evaluator = new CompilingEvaluator(3);
+        Expression expression = parse("((1 + 2) * 3 < 10) ? \"yes\" : \"no\"");
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i < 3 ? 0 : 1, evaluator.compiled());
+            assertEquals("yes", evaluator.evaluate(expression));
+        }
+    }
+
+    @Test
+    void interpretsExpressionsOverTheNodeLimit() {
+        CompilingEvaluator evaluator = new CompilingEvaluator(1);
+        // Leaves, operators and the groupings around all but the outermost operator.
+        int leaves = (CompilingEvaluator.MAX_NODES + 3) / 3;
+        Expression small = parse(balanced(leaves));
+        Expression large = parse(balanced(leaves + 1));
+        assertTrue(new NodeCounter().count(small) <= CompilingEvaluator.MAX_NODES);
+        assertTrue(new NodeCounter().count(large) > CompilingEvaluator.MAX_NODES);
+        assertEquals((double) leaves, evaluator.evaluate(small));
+        assertEquals(1, evaluator.compiled());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(leaves + 1.0, evaluator.evaluate(large));
+        }
+        assertEquals(1, evaluator.compiled());
+    }
+
+    @Test
+    void interpretsExpressionsOverTheDepthLimit() {
+        CompilingEvaluator evaluator = new CompilingEvaluator(1);
+        int depth = CompilingEvaluator.MAX_DEPTH;
+        Expression deep = parse("(1 - ".repeat(depth) + "1" + ")".repeat(depth));
+        Object expected = new Interpreter().evaluate(deep);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected, evaluator.evaluate(deep));
+        }
+        assertEquals(0, evaluator.compiled());
+    }
+
+    @Test
+    void forgetsExpressionsPastTheProfileLimit() {
+        CompilingEvaluator evaluator = new CompilingEvaluator(1);
+        Expression first = parse("1 + 2");
+        assertEquals(3.0, evaluator.evaluate(first));
+        for (int i = 0; i < CompilingEvaluator.MAX_PROFILES; i++) {
+            assertEquals((double) i, evaluator.evaluate(parse(i + " * 1")));
+        }
+        int compiled = evaluator.compiled();
+        assertEquals(CompilingEvaluator.MAX_PROFILES + 1, compiled);
+        // Its handle went with its profile, so it is compiled again.
+        assertEquals(3.0, evaluator.evaluate(first));
+        assertEquals(compiled + 1, evaluator.compiled());
+    }
+
+    private static String balanced(int leaves) {
+        if (leaves == 1) return "1";
+        String left = balanced(leaves / 2);
+        String right = balanced(leaves - leaves / 2);
+        return (leaves / 2 > 1 ? "(" + left + ")" : left) + " + "
+                + (leaves - leaves / 2 > 1 ? "(" + right + ")" : right);
+    }
+
+    private static Expression parse(String source) {
+        ErrorReporter reporter = new ErrorReporter();
+        Expression expression = new PrattParser(new Scanner(source, reporter).scanBuffer().stream(), reporter).parse();
+        assertEquals(0, reporter.errorCount(), source);
+        return expression;
+    }
+}
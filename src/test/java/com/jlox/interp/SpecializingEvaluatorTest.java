@@ -0,0 +1,183 @@
+package com.jlox.interp;
+
+import com.jlox.error.RuntimeError;
+import com.jlox.parser.Binary;
+import com.jlox.parser.Expression;
+import com.jlox.parser.Literal;
+import com.jlox.parser.Ternary;
+import com.jlox.parser.Unary;
+import com.jlox.scanner.Token;
+import com.jlox.scanner.Token.TokenType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Forces specialised nodes to deoptimize by feeding them an operand whose type changes
+ * between executions, and checks every execution against {@link Interpreter}: the value,
+ * or the message and line of the error.
+ */
+class SpecializingEvaluatorTest {
+
+    private static final Token PLUS = new Token(TokenType.PLUS, "+", null, 3);
+    private static final Token LESS = new Token(TokenType.LESS, "<", null, 4);
+    private static final Token EQUAL = new Token(TokenType.EQUAL_EQUAL, "==", null, 5);
+    private static final Token MINUS = new Token(TokenType.MINUS, "-", null, 6);
+    private static final Token BANG = new Token(TokenType.BANG, "!", null, 7);
+
+    // Returns the next of its values on every execution, then keeps the last one.
+    private static final class Changing extends Node {
+        private final Object[] values;
+        private int run = 0;
+
+        Changing(Object... values) {
+            this.values = values;
+        }
+
+        @Override
+        Object execute() {
+            return values[Math.min(run++, values.length - 1)];
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+        }
+    }
+
+    private static Literal literal(Object value) {
+        return new Literal(value);
+    }
+
+    private static void assertLikeInterpreter(Node.Root root, Expression expression) {
+        Object expected;
+        try {
+            expected = new Interpreter().evaluate(expression);
+        } catch (RuntimeError error) {
+            expected = error.getLine() + ": " + error.getMessage();
+        }
+        Object actual;
+        try {
+            actual = root.execute();
+        } catch (RuntimeError error) {
+            actual = error.getLine() + ": " + error.getMessage();
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void numberAddDeoptimizesToConcatenation() {
+        Node.Root root = new Node.Root(BinaryNode.of(PLUS, new Changing(1.0, 2.0, "a"), new Changing(2.0, 3.0, "b")));
+        assertLikeInterpreter(root, new Binary(literal(1.0), PLUS, literal(2.0)));
+        assertSame(BinaryNode.Add.class, root.body.getClass());
+        assertLikeInterpreter(root, new Binary(literal(2.0), PLUS, literal(3.0)));
+        assertEquals(0, root.deoptimizations);
+
+        assertLikeInterpreter(root, new Binary(literal("a"), PLUS, literal("b")));
+        assertSame(BinaryNode.Generic.class, root.body.getClass());
+        assertEquals(1, root.deoptimizations);
+        assertEquals(2, root.rewrites);
+    }
+
+    @Test
+    void numberAddDeoptimizesToTheInterpretersError() {
+        Node.Root root = new Node.Root(BinaryNode.of(PLUS, new Changing(1.0, "a", 1.0), new Changing(2.0, 2.0, null)));
+        assertLikeInterpreter(root, new Binary(literal(1.0), PLUS, literal(2.0)));
+        assertLikeInterpreter(root, new Binary(literal("a"), PLUS, literal(2.0)));
+        assertSame(BinaryNode.Generic.class, root.body.getClass());
+        // Generic from now on, with the same errors.
+        assertLikeInterpreter(root, new Binary(literal(1.0), PLUS, literal(null)));
+        assertEquals(1, root.deoptimizations);
+    }
+
+    @Test
+    void rightOperandChangingTypeDeoptimizes() {
+        Node.Root root = new Node.Root(BinaryNode.of(LESS, new Changing(1.0), new Changing(2.0, "b")));
+        assertLikeInterpreter(root, new Binary(literal(1.0), LESS, literal(2.0)));
+        assertSame(BinaryNode.Less.class, root.body.getClass());
+        assertLikeInterpreter(root, new Binary(literal(1.0), LESS, literal("b")));
+        assertEquals(1, root.deoptimizations);
+    }
+
+    // The left operand is checked before the right one is evaluated, so a failing right
+    // operand must not be reached.
+    @Test
+    void leftOperandIsCheckedFirstAfterDeoptimizing() {
+        Node failing = new Node() {
+            @Override
+            Object execute() {
+                throw new RuntimeError(9, "right operand evaluated");
+            }
+
+            @Override
+            void replaceChild(Node child, Node replacement) {
+            }
+        };
+        Node right = new Changing(2.0);
+        Node.Root root = new Node.Root(BinaryNode.of(LESS, new Changing(1.0, true), right));
+        assertLikeInterpreter(root, new Binary(literal(1.0), LESS, literal(2.0)));
+        ((BinaryNode) root.body).right = root.body.adopt(failing);
+        Expression failingRight = new Unary(MINUS, literal("right"));
+        assertLikeInterpreter(root, new Binary(literal(true), LESS, failingRight));
+    }
+
+    @Test
+    void numberEqualityDeoptimizes() {
+        Node.Root root = new Node.Root(BinaryNode.of(EQUAL, new Changing(1.0, "x", null), new Changing(1.0, "x", 0.0)));
+        assertLikeInterpreter(root, new Binary(literal(1.0), EQUAL, literal(1.0)));
+        assertSame(BinaryNode.NumberEqual.class, root.body.getClass());
+        assertLikeInterpreter(root, new Binary(literal("x"), EQUAL, literal("x")));
+        assertLikeInterpreter(root, new Binary(literal(null), EQUAL, literal(0.0)));
+        assertEquals(1, root.deoptimizations);
+    }
+
+    @Test
+    void unaryNodesDeoptimize() {
+        Node.Root negate = new Node.Root(UnaryNode.of(MINUS, new Changing(1.0, "a")));
+        assertLikeInterpreter(negate, new Unary(MINUS, literal(1.0)));
+        assertSame(UnaryNode.Negate.class, negate.body.getClass());
+        assertLikeInterpreter(negate, new Unary(MINUS, literal("a")));
+        assertEquals(1, negate.deoptimizations);
+
+        Node.Root not = new Node.Root(UnaryNode.of(BANG, new Changing(true, null, 0.0)));
+        assertLikeInterpreter(not, new Unary(BANG, literal(true)));
+        assertSame(UnaryNode.Not.class, not.body.getClass());
+        assertLikeInterpreter(not, new Unary(BANG, literal(null)));
+        assertLikeInterpreter(not, new Unary(BANG, literal(0.0)));
+        assertEquals(1, not.deoptimizations);
+    }
+
+    @Test
+    void ternaryConditionDeoptimizes() {
+        Node.Root root = new Node.Root(TernaryNode.of(new Changing(false, null, "yes"),
+                new Changing(1.0, 1.0, 1.0), new Changing(2.0, 2.0, 2.0)));
+        assertLikeInterpreter(root, new Ternary(literal(false), literal(1.0), literal(2.0)));
+        assertSame(TernaryNode.BooleanCondition.class, root.body.getClass());
+        assertLikeInterpreter(root, new Ternary(literal(null), literal(1.0), literal(2.0)));
+        assertLikeInterpreter(root, new Ternary(literal("yes"), literal(1.0), literal(2.0)));
+        assertEquals(1, root.deoptimizations);
+    }
+
+    @Test
+    void nestedSpecialisationsDeoptimizeIndependently() {
+        // (a + b) < c: only the inner node sees its operands change.
+        BinaryNode sum = BinaryNode.of(PLUS, new Changing(1.0, "a"), new Changing(2.0, "b"));
+        Node.Root root = new Node.Root(BinaryNode.of(LESS, sum, new Changing(5.0)));
+        assertLikeInterpreter(root, new Binary(new Binary(literal(1.0), PLUS, literal(2.0)), LESS, literal(5.0)));
+        assertLikeInterpreter(root, new Binary(new Binary(literal("a"), PLUS, literal("b")), LESS, literal(5.0)));
+        // The inner add gave up, and the comparison then saw a string on its left.
+        assertEquals(2, root.deoptimizations);
+    }
+
+    @Test
+    void evaluatorMatchesInterpreterOnRepeatedRuns() {
+        Expression expression = new Binary(new Binary(literal(1.0), PLUS, literal(2.0)), LESS,
+                new Unary(MINUS, literal(-5.0)));
+        SpecializingEvaluator evaluator = new SpecializingEvaluator(expression);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(new Interpreter().evaluate(expression), evaluator.evaluate());
+        }
+        assertEquals(0, evaluator.deoptimizations());
+        assertEquals(3, evaluator.rewrites());
+    }
+}
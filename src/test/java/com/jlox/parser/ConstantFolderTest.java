@@ -0,0 +1,103 @@
+package com.jlox.parser;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.scanner.Scanner;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ConstantFolderTest {
+
+    @Test
+    void foldsConstantOperators() {
+        assertFolds("7.0", "1 + 2 * 3");
+        assertFolds("ab", "\"a\" + \"b\"");
+        assertFolds("true", "!(1 > 2)");
+        assertFolds("5.0", "1 - -(2 + 2)");
+    }
+
+    @Test
+    void dropsGroupingsAndConstantCommaOperands() {
+        assertFolds("x", "((x))");
+        assertFolds("x", "1, 2, x");
+        assertFolds("(, x 3.0)", "x, (1 + 2)");
+    }
+
+    @Test
+    void foldsOnlyTheBranchTaken() {
+        assertFolds("x", "(1 < 2) ? x : (1 + \"s\")");
+        assertFolds("3.0", "nil ? x : 1 + 2");
+        assertFolds("(?: x 3.0 y)", "x ? 1 + 2 : y");
+    }
+
+    @Test
+    void leavesFailingOperationsInPlace() {
+        assertFolds("(+ 1.0 s)", "1 + \"s\"");
+        assertFolds("(* 2.0 (- s))", "2 * -\"s\"");
+        assertFolds("(+ (* 2.0 (- s)) 3.0)", "2 * -\"s\" + (1 + 2)");
+    }
+
+    @Test
+    void returnsUnchangedTreesAsTheyAre() {
+        Expression expression = parse("x + y * -z ? !x : (x, y)");
+        Expression plain = parse("x ? y : z");
+        assertSame(plain, new ConstantFolder().fold(plain));
+        Expression folded = new ConstantFolder().fold(expression);
+        assertSame(folded, new ConstantFolder().fold(folded));
+    }
+
+    @Test
+    void foldsWithAndWithoutTheCacheAlike() {
+        ResultCache results = new ResultCache();
+        String source = "(1 + 2 + 3 + 4 + 5) * (1 + 2 + 3 + 4 + 5) + x";
+        Expression expected = new ConstantFolder().fold(parse(source));
+        assertEquals(expected, new ConstantFolder(results).fold(parse(source)));
+        assertEquals(expected, new ConstantFolder(results).fold(parse(source)));
+        assertEquals(2, results.hits());
+    }
+
+    @Test
+    void deepTreesFoldWithoutRecursion() {
+        int depth = 50_000;
+        Expression expression = parse("(".repeat(depth) + "1" + ")".repeat(depth));
+        NodeCounter counter = new NodeCounter();
+        assertEquals(depth + 1, counter.count(expression));
+        Expression folded = new ConstantFolder().fold(expression);
+        assertEquals(new Literal(1.0), folded);
+        assertEquals(1, counter.count(folded));
+
+        Expression chain = parse("x" + " + 1".repeat(depth));
+        assertEquals(2 * depth + 1, counter.count(chain));
+        assertEquals(2 * depth + 1, counter.count(new ConstantFolder().fold(chain)));
+    }
+
+    private static void assertFolds(String expected, String source) {
+        Expression folded = new ConstantFolder().fold(parse(source));
+        String printed = folded instanceof Literal literal
+                ? String.valueOf(literal.value())
+                : print(folded);
+        assertEquals(expected, printed, source);
+    }
+
+    private static String print(Expression expression) {
+        StringWriter out = new StringWriter();
+        try {
+            new AstPrinter().print(expression, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static Expression parse(String source) {
+        ErrorReporter reporter = new ErrorReporter();
+        Expression expression = new PrattParser(new Scanner(source, reporter).scanBuffer().stream(), reporter).parse();
+        assertEquals(0, reporter.errorCount(), source);
+        return expression;
+    }
+}
@@ -0,0 +1,134 @@
+package com.jlox.parser;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.scanner.Scanner;
+import com.jlox.scanner.Token;
+import org.junit.jupiter.api.Test;
+
+import static com.jlox.scanner.Token.TokenType.IDENTIFIER;
+import static com.jlox.scanner.Token.TokenType.PLUS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link NodeCounter} and {@link DepthCounter}, which run on every tree the parser accepts,
+ * and {@link SharedNodeCounter} on the DAGs of {@link HashConsing}.
+ */
+class CounterTest {
+
+    @Test
+    void countsEveryKindOfNode() {
+        // Groupings are nodes too, and the ternary binds tighter than the unary minus.
+        Expression expression = parse("(1 + x) * -2 ? !true : (\"s\", nil)");
+        assertEquals(14, new NodeCounter().count(expression));
+        assertEquals(6, new DepthCounter().depth(expression));
+    }
+
+    @Test
+    void takesTheLongestPath() {
+        assertEquals(1, new DepthCounter().depth(parse("1")));
+        assertEquals(6, new DepthCounter().depth(parse("1 + ((2 - 3) * 4)")));
+        assertEquals(6, new DepthCounter().depth(parse("((2 - 3) * 4) + 1")));
+        assertEquals(4, new DepthCounter().depth(parse("1 ? 2 : (3 + 4)")));
+    }
+
+    @Test
+    void deepTreesWithoutRecursion() {
+        int depth = 100_000;
+        Expression nested = parse("(".repeat(depth) + "1" + ")".repeat(depth));
+        assertEquals(depth + 1, new NodeCounter().count(nested));
+        assertEquals(depth + 1, new DepthCounter().depth(nested));
+        Expression chain = parse("1" + " - 1".repeat(depth));
+        assertEquals(2 * depth + 1, new NodeCounter().count(chain));
+        assertEquals(depth + 1, new DepthCounter().depth(chain));
+    }
+
+    @Test
+    void countsEachSharedNodeOnce() {
+        String source = "(1 + x) * (1 + x) - -(1 + x) ? x : (1 + x)";
+        HashConsing nodes = new HashConsing();
+        SharedNodeCounter counter = new SharedNodeCounter();
+        assertEquals(new NodeCounter().count(parse(source)), counter.count(parse(source, nodes)));
+        assertEquals(nodes.size(), counter.visited());
+    }
+
+    @Test
+    void countsTreesTooLargeToWalk() {
+        HashConsing nodes = new HashConsing();
+        Token plus = new Token(PLUS, "+", null, 1);
+        Expression expression = nodes.variable(new Token(IDENTIFIER, "x", "x", 1));
+        for (int i = 0; i < 60; i++) {
+            expression = nodes.binary(expression, plus, expression);
+        }
+        SharedNodeCounter counter = new SharedNodeCounter();
+        assertEquals((1L << 61) - 1, counter.count(expression));
+        assertEquals(61, counter.visited());
+    }
+
+    @Test
+    void countsDeepDagsWithoutRecursion() {
+        int depth = 100_000;
+        String source = "(1 + ".repeat(depth) + "1" + ")".repeat(depth);
+        Expression shared = parse(source, new HashConsing());
+        assertEquals(new NodeCounter().count(parse(source)), new SharedNodeCounter().count(shared));
+    }
+
+    @Test
+    void recomputesNullResults() {
+        int[] literals = {0};
+        MemoizingVisitor<String> visitor = new MemoizingVisitor<>() {
+            @Override
+            protected String compute(Binary expression) {
+                expression.left().accept(this);
+                expression.right().accept(this);
+                return "binary";
+            }
+
+            @Override
+            protected String compute(Literal expression) {
+                literals[0]++;
+                return null;
+            }
+
+            @Override
+            protected String compute(Unary expression) {
+                return "unary";
+            }
+
+            @Override
+            protected String compute(Grouping expression) {
+                return "grouping";
+            }
+
+            @Override
+            protected String compute(Ternary expression) {
+                return "ternary";
+            }
+
+            @Override
+            protected String compute(Variable expression) {
+                return "variable";
+            }
+        };
+        Expression expression = parse("1 + 1", new HashConsing());
+        assertEquals("binary", expression.accept(visitor));
+        int computed = literals[0];
+        assertEquals("binary", expression.accept(visitor));
+        assertEquals(computed, literals[0]);
+        assertEquals(1, visitor.visited());
+        ((Binary) expression).left().accept(visitor);
+        assertEquals(computed + 1, literals[0]);
+    }
+
+    private static Expression parse(String source) {
+        return parse(source, NodeFactory.TREE);
+    }
+
+    private static Expression parse(String source, NodeFactory nodes) {
+        ErrorReporter reporter = new ErrorReporter();
+        PrattParser parser = new PrattParser(new Scanner(source, reporter).scanBuffer(), reporter);
+        parser.setNodeFactory(nodes);
+        Expression expression = parser.parse();
+        assertEquals(0, reporter.errorCount(), source);
+        return expression;
+    }
+}
@@ -0,0 +1,137 @@
+package com.jlox.parser;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.scanner.IncrementalScanner;
+import com.jlox.scanner.Scanner;
+import com.jlox.scanner.TokenBuffer;
+import com.jlox.scanner.TokenEdit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Differential test: after every edit, {@link IncrementalScanner} and
+ * {@link IncrementalParser} must give the tokens and the tree of scanning and parsing the
+ * whole source again.
+ */
+class IncrementalParserTest {
+
+    private static final String[] OPERANDS = {"1", "x", "nil", "\"s\"", "2.5"};
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "==", "<", ","};
+    // Edits that mostly break the source; the next edit undoes them.
+    private static final String[] NOISE = {"(", ")", "+", "\n", " ", "\"", "// c\n", "?", "1.", ""};
+    private static final Pattern INNER_GROUP = Pattern.compile("\\([^()]*\\)");
+
+    @Test
+    void reusesGroupsAfterAnEditThatAddsLines() {
+        Session session = new Session("(1 + 2)\n* (3 - x)\n+ (4 / y)");
+        session.replace(0, 0, "\n\n");
+        assertEquals(3, session.parser.reused());
+        assertEquals(0, session.scanner.scanned());
+        session.replace(session.source.indexOf('3'), 1, "5\n-\n6");
+        assertEquals(2, session.parser.reused());
+        assertTrue(session.scanner.scanned() <= 6, "Scanned " + session.scanner.scanned());
+        session.replace(session.source.indexOf('y'), 1, "z");
+        assertEquals(2, session.parser.reused());
+    }
+
+    @Test
+    void forgetsNoGroupAnErrorLeftStale() {
+        Session session = new Session("((1 + 2)\n* (3 - x))   + 4");
+        // Unbalanced until the second edit, which is outside the outer group that the
+        // first one changed.
+        session.replace(session.source.indexOf('3'), 0, "(");
+        session.replace(session.source.indexOf("   ") + 2, 0, ")");
+        assertEquals(1, session.parser.reused());
+
+        // More edits with errors in a row than the table remembers.
+        session = new Session("((1 + 2)\n* (3 - x))   + 4");
+        for (int i = 0; i < 20; i++) {
+            session.replace(session.source.indexOf('x'), 0, "(");
+        }
+        session.replace(session.source.indexOf("   ") + 2, 0, ")".repeat(20));
+        assertEquals(1, session.parser.reused());
+    }
+
+    @Test
+    void randomEdits() {
+        Random random = new Random(15);
+        int reused = 0;
+        for (int run = 0; run < 100; run++) {
+            Session session = new Session(expression(random, 4));
+            for (int i = 0; i < 40 && session.source.length() < 2000; i++) {
+                String before = session.source;
+                if (random.nextInt(4) == 0) {
+                    int offset = random.nextInt(before.length() + 1);
+                    int removed = Math.min(random.nextInt(3), before.length() - offset);
+                    String noise = NOISE[random.nextInt(NOISE.length)];
+                    session.replace(offset, removed, noise);
+                    String restored = before.substring(offset, offset + removed);
+                    session.replace(offset, noise.length(), restored);
+                } else if (random.nextBoolean()) {
+                    List<Integer> operands = new ArrayList<>();
+                    for (int j = 0; j < before.length(); j++) {
+                        if (before.charAt(j) == 'x' || before.charAt(j) == '1') operands.add(j);
+                    }
+                    if (operands.isEmpty()) continue;
+                    int offset = operands.get(random.nextInt(operands.size()));
+                    session.replace(offset, 1, expression(random, 1 + random.nextInt(2)));
+                } else {
+                    List<int[]> groups = new ArrayList<>();
+                    Matcher matcher = INNER_GROUP.matcher(before);
+                    while (matcher.find()) groups.add(new int[]{matcher.start(), matcher.end()});
+                    if (groups.isEmpty()) continue;
+                    int[] group = groups.get(random.nextInt(groups.size()));
+                    String operand = OPERANDS[random.nextInt(OPERANDS.length)];
+                    session.replace(group[0], group[1] - group[0], operand);
+                }
+                reused += session.parser.reused();
+            }
+        }
+        assertTrue(reused > 1000, "Only " + reused + " groups reused");
+    }
+
+    private static String expression(Random random, int depth) {
+        if (depth == 0) return OPERANDS[random.nextInt(OPERANDS.length)];
+        String newline = random.nextBoolean() ? "\n" : " ";
+        String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+        return "(" + expression(random, depth - 1) + " " + operator + newline
+                + expression(random, depth - 1) + ")";
+    }
+
+    private static final class Session {
+        final IncrementalScanner scanner = new IncrementalScanner();
+        final IncrementalParser parser = new IncrementalParser();
+        String source;
+
+        Session(String source) {
+            this.source = source;
+            ErrorReporter reporter = new ErrorReporter();
+            parser.parse(scanner.scan(source, reporter), reporter);
+        }
+
+        void replace(int offset, int removed, String inserted) {
+            source = source.substring(0, offset) + inserted + source.substring(offset + removed);
+            ErrorReporter reporter = new ErrorReporter();
+            TokenEdit edit = scanner.edit(source, offset, removed, inserted.length(), reporter);
+            Expression expression = parser.reparse(edit, reporter);
+
+            TokenBuffer expected = new Scanner(source, new ErrorReporter()).scanBuffer();
+            TokenBuffer tokens = edit.tokens();
+            assertEquals(expected.size(), tokens.size(), source);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.token(i), tokens.token(i), source);
+                assertEquals(expected.start(i), tokens.start(i), source);
+            }
+            Expression parsed = new PrattParser(expected, new ErrorReporter()).parse();
+            assertEquals(parsed, expression, source);
+        }
+    }
+}
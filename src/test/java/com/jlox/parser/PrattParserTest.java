@@ -0,0 +1,163 @@
+package com.jlox.parser;
+
+import com.jlox.SourceGenerator;
+import com.jlox.error.ErrorReporter;
+import com.jlox.scanner.Scanner;
+import com.jlox.scanner.TokenBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Differential test: {@link PrattParser} must produce the trees and the diagnostics of
+ * the recursive-descent {@link Parser} on every input, valid or not, and both must parse
+ * a {@link TokenBuffer} read in place as they parse its stream of tokens.
+ */
+class PrattParserTest {
+
+    private static final String[] EDGE_CASES = {
+            "",
+            "1",
+            "1 + 2 * 3 - 4 / 5",
+            "1 == 2 != 3 < 4 <= 5 > 6 >= 7",
+            "!!true",
+            "!-1",
+            "1 - -2",
+            "1 * -(2 + 3)",
+            "1, 2, 3",
+            "1 ? 2 : 3",
+            "1 ? 2 : 3 ? 4 : 5",
+            "1 ? 2 ? 3 : 4 : 5",
+            "(1, 2) ? (3 == 4) : 5, 6",
+            "a ? b : c",
+            "\"a\" + \"b\" == nil",
+            "((((1))))",
+            "(1 + 2) * (3 - (4 / (5 + 6)))",
+            "-1 + 2 == 3",
+            // Leading operators: the operator and the token after it are skipped.
+            "+ 1",
+            "* 2 + 3",
+            "== 1 2",
+            "> 1 < 2",
+            "1 == > 2",
+            "1 + (* 3)",
+            "1 * / 2",
+            "- == 3",
+            "(== 1) + 2",
+            "1 < - 2",
+            // Errors and recovery.
+            "1 +",
+            "(",
+            "(1",
+            "(1 + 2",
+            ")",
+            "1 )",
+            "1 ? 2",
+            "1 ? 2 : ",
+            "1 ? 2 , 3 : 4",
+            "(1 + ) * (2",
+            "(1 +) + (2 *) + 3",
+            "((1 + ) + (2 * )) - (3 / )",
+            "1 2 3",
+            "(1 2) + 3",
+            "1 ; 2",
+            "1 + ; var x",
+            "(1 ? 2) + (3 : 4)",
+            ",",
+            "1 , , 2",
+            "?",
+            ": 1",
+            "!",
+            "!(1 +) == (",
+    };
+
+    @Test
+    void edgeCases() {
+        for (String source : EDGE_CASES) {
+            assertSameParse(source);
+        }
+    }
+
+    @Test
+    void multiLineErrorsKeepTheirLines() {
+        assertSameParse("(1 +\n2 *)\n+ (\n3 ==)\n* (4");
+    }
+
+    @Test
+    void manyErrorsStopAtTheSameLimit() {
+        // Statements to recover at, on lines of their own: identical diagnostics are only reported once.
+        assertSameParse("1 +;\n".repeat(3 * ErrorReporter.DEFAULT_MAX_ERRORS));
+    }
+
+    @Test
+    void generatedSources() {
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            SourceGenerator.Shape shape = new SourceGenerator.Shape(1 + random.nextInt(200),
+                    random.nextInt(4) == 0 ? random.nextInt(40) : 0, SourceGenerator.Shape.MIXED, 0.1, 0.2);
+            String source = SourceGenerator.generate(shape, random.nextLong());
+            assertNotNull(parse(source, true, false).expression, source);
+            assertSameParse(source);
+        }
+    }
+
+    @Test
+    void randomTokenSoup() {
+        String[] pieces = {"1", "2.5", "\"s\"", "true", "nil", "x", "+", "-", "*", "/", "==", "!=", "<", ">=",
+                "!", ",", "?", ":", "(", ")", ";", "\n"};
+        Random random = new Random(12);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder source = new StringBuilder();
+            int length = 1 + random.nextInt(16);
+            for (int j = 0; j < length; j++) {
+                source.append(pieces[random.nextInt(pieces.length)]).append(' ');
+            }
+            assertSameParse(source.toString());
+        }
+    }
+
+    @Test
+    void deepNestingParsesWithoutRecursion() {
+        int depth = 100_000;
+        String source = "(".repeat(depth) + "1" + ")".repeat(depth);
+        Parsed parsed = parse(source, true, true);
+        Expression expression = parsed.expression;
+        for (int i = 0; i < depth; i++) {
+            expression = ((Grouping) expression).expression();
+        }
+        assertEquals(new Literal(1.0), expression);
+        assertNull(parse("(".repeat(depth) + "1", true, true).expression);
+    }
+
+    private record Parsed(Expression expression, List<String> diagnostics) {
+    }
+
+    private static Parsed parse(String source, boolean pratt, boolean inPlace) {
+        ErrorReporter reporter = new ErrorReporter();
+        TokenBuffer tokens = new Scanner(source, reporter).scanBuffer();
+        Expression expression;
+        if (inPlace) {
+            expression = pratt ? new PrattParser(tokens, reporter).parse() : new Parser(tokens, reporter).parse();
+        } else {
+            expression = pratt
+                    ? new PrattParser(tokens.stream(), reporter).parse()
+                    : new Parser(tokens.stream(), reporter).parse();
+        }
+        return new Parsed(expression, reporter.getDiagnostics());
+    }
+
+    private static void assertSameParse(String source) {
+        Parsed expected = parse(source, false, false);
+        for (int i = 1; i < 4; i++) {
+            Parsed actual = parse(source, i != 2, i != 1);
+            String parser = (i != 2 ? "PrattParser" : "Parser") + (i != 1 ? " in place" : "");
+            assertEquals(expected.diagnostics, actual.diagnostics, () -> "Diagnostics of " + parser + " on " + source);
+            assertEquals(expected.expression, actual.expression, () -> "Tree of " + parser + " on " + source);
+        }
+    }
+}
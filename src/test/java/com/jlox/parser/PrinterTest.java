@@ -0,0 +1,158 @@
+package com.jlox.parser;
+
+import com.jlox.scanner.Token;
+import com.jlox.scanner.Token.TokenType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Golden output of {@link AstPrinter} and {@link RPN}, both written to an
+ * {@link Appendable}.
+ */
+class PrinterTest {
+
+    private static Expression number(double value) {
+        return new Literal(value);
+    }
+
+    private static Token token(TokenType type, String lexeme) {
+        return new Token(type, lexeme, null, 1);
+    }
+
+    private static Expression binary(Expression left, TokenType type, String lexeme, Expression right) {
+        return new Binary(left, token(type, lexeme), right);
+    }
+
+    private static Expression unary(TokenType type, String lexeme, Expression operand) {
+        return new Unary(token(type, lexeme), operand);
+    }
+
+    private static String ast(Expression expression) throws IOException {
+        StringWriter out = new StringWriter();
+        new AstPrinter().print(expression, out);
+        return out.toString();
+    }
+
+    private static String rpn(Expression expression) throws IOException {
+        StringWriter out = new StringWriter();
+        new RPN().print(expression, out);
+        return out.toString();
+    }
+
+    @Test
+    void literals() throws IOException {
+        assertEquals("1.5", ast(number(1.5)));
+        assertEquals("nil", ast(new Literal(null)));
+        assertEquals("true", ast(new Literal(true)));
+        assertEquals("text", ast(new Literal("text")));
+        assertEquals("x", ast(new Variable(token(TokenType.IDENTIFIER, "x"))));
+
+        assertEquals("1.5", rpn(number(1.5)));
+        assertEquals("nil", rpn(new Literal(null)));
+        assertEquals("false", rpn(new Literal(false)));
+        assertEquals("x", rpn(new Variable(token(TokenType.IDENTIFIER, "x"))));
+    }
+
+    @Test
+    void binary() throws IOException {
+        Expression expression = binary(number(1), TokenType.MINUS, "-",
+                binary(number(2), TokenType.STAR, "*", number(3)));
+        assertEquals("(- 1.0 (* 2.0 3.0))", ast(expression));
+        assertEquals("1.0 2.0 3.0 * -", rpn(expression));
+    }
+
+    // RPN used to print the left operand twice and never the right one.
+    @Test
+    void rpnPrintsLeftThenRightThenOperator() throws IOException {
+        assertEquals("1.0 2.0 /", rpn(binary(number(1), TokenType.SLASH, "/", number(2))));
+        Expression nested = binary(binary(number(1), TokenType.PLUS, "+", number(2)), TokenType.STAR, "*",
+                binary(number(3), TokenType.MINUS, "-", number(4)));
+        assertEquals("1.0 2.0 + 3.0 4.0 - *", rpn(nested));
+    }
+
+    @Test
+    void unary() throws IOException {
+        Expression expression = unary(TokenType.BANG, "!", unary(TokenType.MINUS, "-", number(2)));
+        assertEquals("(! (- 2.0))", ast(expression));
+        assertEquals("2.0 - !", rpn(expression));
+    }
+
+    @Test
+    void ternary() throws IOException {
+        Expression expression = new Ternary(new Literal(true), number(1),
+                new Ternary(new Literal(false), number(2), number(3)));
+        assertEquals("(?: true 1.0 (?: false 2.0 3.0))", ast(expression));
+        assertEquals("true 1.0 false 2.0 3.0 ?: ?:", rpn(expression));
+    }
+
+    @Test
+    void grouping() throws IOException {
+        Expression expression = new Grouping(new Grouping(binary(number(1), TokenType.PLUS, "+", number(2))));
+        assertEquals("(group (group (+ 1.0 2.0)))", ast(expression));
+        assertEquals("1.0 2.0 + grouping grouping", rpn(expression));
+    }
+
+    @Test
+    void comma() throws IOException {
+        Expression expression = binary(binary(number(1), TokenType.COMMA, ",", number(2)),
+                TokenType.COMMA, ",", new Literal("s"));
+        assertEquals("(, (, 1.0 2.0) s)", ast(expression));
+        assertEquals("1.0 2.0 , s ,", rpn(expression));
+    }
+
+    @Test
+    void mixed() throws IOException {
+        Expression expression = binary(
+                new Grouping(new Ternary(number(1), number(2), number(3))), TokenType.EQUAL_EQUAL, "==",
+                unary(TokenType.MINUS, "-", new Literal(null)));
+        assertEquals("(== (group (?: 1.0 2.0 3.0)) (- nil))", ast(expression));
+        assertEquals("1.0 2.0 3.0 ?: grouping nil - ==", rpn(expression));
+    }
+
+    @Test
+    void printToStringMatchesAppendable() throws IOException {
+        Expression expression = binary(number(1), TokenType.LESS_EQUAL, "<=",
+                unary(TokenType.MINUS, "-", number(2)));
+        assertEquals(ast(expression), new AstPrinter().print(expression));
+        assertEquals(rpn(expression), new RPN().print(expression));
+    }
+
+    @Test
+    void deepTreesPrintWithoutRecursion() throws IOException {
+        int depth = 200_000;
+        Expression expression = number(1);
+        for (int i = 0; i < depth; i++) {
+            expression = new Grouping(expression);
+        }
+        assertEquals("(group ".repeat(depth) + "1.0" + ")".repeat(depth), ast(expression));
+        assertEquals("1.0" + " grouping".repeat(depth), rpn(expression));
+    }
+
+    @Test
+    void appendableErrorsPropagate() {
+        Appendable failing = new Appendable() {
+            @Override
+            public Appendable append(CharSequence text) throws IOException {
+                throw new IOException("closed");
+            }
+
+            @Override
+            public Appendable append(CharSequence text, int start, int end) throws IOException {
+                throw new IOException("closed");
+            }
+
+            @Override
+            public Appendable append(char c) throws IOException {
+                throw new IOException("closed");
+            }
+        };
+        Expression expression = binary(number(1), TokenType.PLUS, "+", number(2));
+        assertThrows(IOException.class, () -> new AstPrinter().print(expression, failing));
+        assertThrows(IOException.class, () -> new RPN().print(expression, failing));
+    }
+}
@@ -0,0 +1,173 @@
+package com.jlox.parser;
+
+import com.jlox.error.ErrorReporter;
+import com.jlox.scanner.Scanner;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultCacheTest {
+
+    private static final Literal ONE = new Literal(1.0);
+
+    @Test
+    void matchesSubtreesIgnoringGroupingsAndLines() {
+        ResultCache.Key key = key("(1 + 2) * 3 - 4 / 5");
+        ResultCache.Key same = key("((1\n+ 2)) * (3)\n- ((4) / 5)");
+        assertEquals(key, same);
+        assertEquals(key.hashCode(), same.hashCode());
+        assertFalse(key.equals(key("(1 + 2) * 3 - 4 * 5")));
+        assertFalse(key.equals(key("(1 + 2) * 3 - 4 / 6")));
+        assertFalse(key.equals(key("(1 + 2) * 3 - \"4\" / 5")));
+
+        ResultCache results = new ResultCache();
+        results.put(key, ONE);
+        assertEquals(ONE, results.get(same));
+        assertEquals(1, results.hits());
+        assertEquals(0, results.misses());
+    }
+
+    @Test
+    void looksUpOnlyConstantSubtreesOfEnoughNodes() {
+        ResultCache results = new ResultCache();
+        Expression expression = parse("(1 + 2 + 3 + 4) * (1 + 2 + 3 + 4 + 5) + x");
+        // 1 + 2 + 3 + 4 has 7 nodes, the other operand 9 and their product 17.
+        assertEquals(2, results.keys(expression).size());
+        assertTrue(results.keys(parse("1 + 2 + 3")).isEmpty());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryOverTheEntryBound() {
+        List<ResultCache.Key> keys = sameStripe(3);
+        ResultCache results = new ResultCache(2 * ResultCache.STRIPES, Long.MAX_VALUE);
+        results.put(keys.get(0), ONE);
+        results.put(keys.get(1), ONE);
+        assertNotNull(results.get(keys.get(0)));
+        results.put(keys.get(2), ONE);
+
+        assertEquals(2, results.size());
+        assertEquals(1, results.evictions());
+        assertNull(results.get(keys.get(1)));
+        assertNotNull(results.get(keys.get(0)));
+        assertNotNull(results.get(keys.get(2)));
+        assertEquals(3, results.hits());
+        assertEquals(1, results.misses());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntriesOverTheWeightBound() {
+        List<ResultCache.Key> keys = sameStripe(3);
+        // Nine nodes each, and a string of 80 characters weighs ten more.
+        ResultCache results = new ResultCache(Integer.MAX_VALUE, 30L * ResultCache.STRIPES);
+        results.put(keys.get(0), ONE);
+        results.put(keys.get(1), ONE);
+        results.put(keys.get(2), ONE);
+        assertEquals(27, results.weight());
+        assertNotNull(results.get(keys.get(0)));
+
+        results.put(keys.get(2), new Literal("s".repeat(80)));
+        assertEquals(28, results.weight());
+        assertEquals(2, results.size());
+        assertEquals(1, results.evictions());
+        assertNull(results.get(keys.get(1)));
+
+        // Heavier than a whole stripe: not stored, and nothing is evicted for it.
+        results.put(keys.get(1), new Literal("s".repeat(200)));
+        assertNull(results.get(keys.get(1)));
+        assertEquals(2, results.size());
+        assertEquals(1, results.evictions());
+        assertEquals(1, results.hits());
+        assertEquals(2, results.misses());
+    }
+
+    @Test
+    void foldsOnSeveralThreadsAtOnce() throws Exception {
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            sources.add("(" + i + " + 1 + 2 + 3 + 4) * (x + " + i + " * 2 * 3 * 4 * 5)");
+        }
+        List<Expression> expected = new ArrayList<>();
+        for (String source : sources) expected.add(new ConstantFolder().fold(parse(source)));
+
+        ResultCache results = new ResultCache(4 * ResultCache.STRIPES, 1 << 20);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int seed = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        int index = (i * 7 + seed * 13) % sources.size();
+                        Expression folded = new ConstantFolder(results).fold(parse(sources.get(index)));
+                        assertEquals(expected.get(index), folded, sources.get(index));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+        // Each fold looks up its two constant operands.
+        assertEquals(8 * 2000 * 2, results.hits() + results.misses());
+        assertTrue(results.hits() > 0);
+        assertTrue(results.evictions() > 0);
+        assertTrue(results.size() <= 4 * ResultCache.STRIPES);
+        assertEquals(9L * results.size(), results.weight());
+    }
+
+    @Test
+    void deepTreesHashAndMatchWithoutRecursion() {
+        int depth = 50_000;
+        String nested = "(".repeat(depth) + "1 + 2 + 3 + 4 + 5" + ")".repeat(depth);
+        ResultCache results = new ResultCache();
+        assertEquals(new Literal(15.0), new ConstantFolder(results).fold(parse(nested)));
+        assertEquals(new Literal(15.0), new ConstantFolder(results).fold(parse(nested)));
+        assertEquals(1, results.hits());
+
+        // Unbounded weight, so the whole chain is cached too.
+        results = new ResultCache(ResultCache.DEFAULT_MAX_ENTRIES, Long.MAX_VALUE);
+        String chain = "1" + " + 1".repeat(depth);
+        assertEquals(new Literal(depth + 1.0), new ConstantFolder(results).fold(parse(chain)));
+        assertEquals(0, results.hits());
+        assertEquals(new Literal(depth + 1.0), new ConstantFolder(results).fold(parse(chain)));
+        assertEquals(1, results.hits());
+        assertEquals(key(chain), key("(" + chain + ")"));
+    }
+
+    // Keys that share a stripe, found with a cache that holds one entry per stripe.
+    private static List<ResultCache.Key> sameStripe(int count) {
+        List<ResultCache.Key> keys = new ArrayList<>();
+        keys.add(key("0 + 1 + 1 + 1 + 1"));
+        for (int i = 1; keys.size() < count; i++) {
+            ResultCache.Key key = key(i + " + 1 + 1 + 1 + 1");
+            ResultCache probe = new ResultCache(ResultCache.STRIPES, Long.MAX_VALUE);
+            probe.put(keys.get(0), ONE);
+            probe.put(key, ONE);
+            if (probe.evictions() == 1) keys.add(key);
+        }
+        return keys;
+    }
+
+    private static ResultCache.Key key(String source) {
+        Expression expression = parse(source);
+        while (expression instanceof Grouping grouping) expression = grouping.expression();
+        return new ResultCache().keys(expression).get(expression);
+    }
+
+    private static Expression parse(String source) {
+        ErrorReporter reporter = new ErrorReporter();
+        Expression expression = new PrattParser(new Scanner(source, reporter).scanBuffer(), reporter).parse();
+        assertEquals(0, reporter.errorCount(), source);
+        return expression;
+    }
+}
@@ -0,0 +1,94 @@
+package com.jlox.scanner;
+
+import com.jlox.error.ErrorReporter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Differential test: {@link ParallelScanner} must produce the very buffer and diagnostics
+ * of a sequential {@link Scanner}, whatever the chunk count and whatever crosses the cuts.
+ */
+class ParallelScannerTest {
+
+    private static final int[] CHUNKS = {1, 2, 3, 4, 7, 16, 64};
+
+    @Test
+    void plainLines() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            source.append("(").append(i).append(" + x").append(i).append(") * 2.5 == \"s\" // line\n");
+        }
+        assertSameScan(source.toString());
+    }
+
+    @Test
+    void stringsAcrossCuts() {
+        // Every line break is inside a string, so every cut guesses wrong.
+        assertSameScan("\"" + "a\n".repeat(300) + "\" + 1\n2\n");
+        assertSameScan(("1 + \"two\nlines\" - 3\n").repeat(200));
+    }
+
+    @Test
+    void nestedCommentsAcrossCuts() {
+        assertSameScan("1 /* outer\n" + "/* inner\n*/\n".repeat(100) + "still outer */ + 2\n".repeat(3));
+        assertSameScan(("a /* x /* y\n */ z\n */ b\n").repeat(150));
+        // A cut that lands on a line that looks like a comment opener or closer.
+        assertSameScan(("\"/*\"\n*/ 1\n/* \"\n\" */ 2\n").repeat(100));
+    }
+
+    @Test
+    void unterminatedConstructs() {
+        assertSameScan("1 +\n".repeat(200) + "\"never closed\n" + "2\n".repeat(200));
+        assertSameScan("1 +\n".repeat(200) + "/* never /* closed */\n" + "2\n".repeat(200));
+        assertSameScan("1\n".repeat(100) + "@\n" + "2\n".repeat(100) + "#\n");
+    }
+
+    @Test
+    void emptyAndTiny() {
+        assertSameScan("");
+        assertSameScan("\n");
+        assertSameScan("1");
+        assertSameScan("\n\n\n1\n\n");
+    }
+
+    @Test
+    void randomSources() {
+        String[] pieces = {"1", "22.5", "x", "var", "nil", "+", "-", "*", "/", "==", "!=", "<=", "!", "(", ")",
+                ",", "?", ":", ";", " ", "\n", "\n", "\"s\"", "\"two\nlines\"", "// c\n", "/* c */", "/* a\n/* b */\n*/",
+                "/*", "*/", "\"", "@", "\t"};
+        Random random = new Random(22);
+        for (int i = 0; i < 400; i++) {
+            StringBuilder source = new StringBuilder();
+            int length = random.nextInt(400);
+            for (int j = 0; j < length; j++) {
+                source.append(pieces[random.nextInt(pieces.length)]).append(random.nextBoolean() ? " " : "\n");
+            }
+            assertSameScan(source.toString());
+        }
+    }
+
+    private static void assertSameScan(String source) {
+        ErrorReporter expectedReporter = new ErrorReporter();
+        TokenBuffer expected = new Scanner(source, expectedReporter).scanBuffer();
+        for (int chunks : CHUNKS) {
+            ErrorReporter reporter = new ErrorReporter();
+            TokenBuffer actual = new ParallelScanner(source, reporter, chunks).scanBuffer();
+            String where = chunks + " chunks of " + source;
+            assertEquals(expectedReporter.getDiagnostics(), reporter.getDiagnostics(), where);
+            assertEquals(expected.size(), actual.size(), where);
+            for (int i = 0; i < expected.size(); i++) {
+                int index = i;
+                assertEquals(expected.type(i), actual.type(i), () -> "Type of token " + index + ", " + where);
+                assertEquals(expected.start(i), actual.start(i), () -> "Start of token " + index + ", " + where);
+                assertEquals(expected.length(i), actual.length(i), () -> "Length of token " + index + ", " + where);
+                assertEquals(expected.line(i), actual.line(i), () -> "Line of token " + index + ", " + where);
+                if (expected.type(i) == Token.TokenType.NUMBER) {
+                    assertEquals(expected.number(i), actual.number(i), () -> "Number " + index + ", " + where);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.jlox.scanner;
+
+import com.jlox.error.ErrorReporter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBufferTest {
+
+    @Test
+    void tokensMatchTheScannersOfEveryType() {
+        String source = "( ) { } , . - + ; / * ? : ! != = == > >= < <=\n"
+                + "and class else false fun for if nil or print return super this true var while\n"
+                + "name _x1 \"a string\" \"two\nlines\" 12 3.25 // comment\n"
+                + "andy classy nilly";
+        List<Token> expected = new Scanner(source, new ErrorReporter()).scanTokens();
+        TokenBuffer buffer = new Scanner(source, new ErrorReporter()).scanBuffer();
+        assertEquals(expected.size(), buffer.size());
+        assertEquals(Token.TokenType.values().length, expected.stream().map(Token::type).distinct().count());
+        for (int i = 0; i < buffer.size(); i++) {
+            assertEquals(expected.get(i), buffer.token(i), "Token " + i);
+            assertEquals(expected.get(i).literal(), buffer.literal(i), "Literal " + i);
+        }
+    }
+}
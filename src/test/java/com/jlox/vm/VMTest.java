@@ -0,0 +1,123 @@
+package com.jlox.vm;
+
+import com.jlox.error.CompileError;
+import com.jlox.error.ErrorReporter;
+import com.jlox.error.RuntimeError;
+import com.jlox.interp.Interpreter;
+import com.jlox.parser.Expression;
+import com.jlox.parser.PrattParser;
+import com.jlox.scanner.Scanner;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Differential test: compiled and run on the {@link VM}, every expression must evaluate
+ * to the value of the {@link Interpreter}, or fail with its message on its line.
+ */
+class VMTest {
+
+    @Test
+    void leftOperandFailsBeforeTheRightRuns() {
+        assertEquals("1: Operands must be numbers.", run("\"a\" *\n(1 <\n\"b\")"));
+        assertEquals("1: Operands must be two numbers or two strings.", run("true +\n(1 -\nnil)"));
+        assertEquals("2: Operands must be numbers.", run("(\"a\" + \"b\")\n> (1 /\ntrue)"));
+        assertEquals("2: Operand must be a number.", run("1 -\n-\"a\""));
+    }
+
+    @Test
+    void reportsChunksOverTheirLimits() {
+        CompileError constants = assertThrows(CompileError.class,
+                () -> new Compiler().compile(parse(sum(0, 70_000))));
+        assertEquals("Too many number constants in one chunk.", constants.getMessage());
+        CompileError jump = assertThrows(CompileError.class,
+                () -> new Compiler().compile(parse("x ? " + sum(0, 20_000) + " : 1")));
+        assertEquals("Too much code to jump over.", jump.getMessage());
+        assertEquals(1, jump.getLine());
+        assertEquals("1", run("nil ? " + sum(0, 5_000) + " : 1"));
+    }
+
+    @Test
+    void edgeCases() {
+        String[] sources = {
+                "1 + 2 * 3", "\"a\" + \"b\" + \"c\"", "(\"a\" + \"b\") == \"ab\"", "1 - -2", "!nil",
+                "nil ? 1 : 2", "1, 2", "1 < 2 == true", "\"a\" + 1", "1 + \"a\"", "nil + nil",
+                "\"a\" < \"b\"", "true ?\n1 +\n\"a\" : 2", "1 - -(1 +\n\"a\")", "(1, \"a\") + \"b\"",
+        };
+        for (String source : sources) {
+            assertSameResult(source);
+        }
+    }
+
+    @Test
+    void randomExpressions() {
+        String[] operands = {"1", "2.5", "\"s\"", "\"t\"", "true", "false", "nil"};
+        String[] operators = {"+", "-", "*", "/", "==", "!=", "<", "<=", ">", ">=", ","};
+        Random random = new Random(2);
+        int run = 0;
+        for (int i = 0; i < 5000; i++) {
+            String source = expression(random, operands, operators, 1 + random.nextInt(5));
+            // The grammar takes a unary operator in few places.
+            ErrorReporter reporter = new ErrorReporter();
+            new PrattParser(new Scanner(source, reporter).scanBuffer().stream(), reporter).parse();
+            if (reporter.hadError()) continue;
+            assertSameResult(source);
+            run++;
+        }
+        assertTrue(run > 1000, "Only " + run + " expressions parse");
+    }
+
+    private static String expression(Random random, String[] operands, String[] operators, int depth) {
+        if (depth == 0) return operands[random.nextInt(operands.length)];
+        String newline = random.nextBoolean() ? "\n" : " ";
+        switch (random.nextInt(5)) {
+            case 0:
+                return "!" + expression(random, operands, operators, depth - 1);
+            case 1:
+                return "(" + expression(random, operands, operators, depth - 1) + " ?" + newline
+                        + "(" + expression(random, operands, operators, depth - 1) + ") : ("
+                        + expression(random, operands, operators, depth - 1) + "))";
+            default:
+                return "(" + expression(random, operands, operators, depth - 1) + " "
+                        + operators[random.nextInt(operators.length)] + newline
+                        + expression(random, operands, operators, depth - 1) + ")";
+        }
+    }
+
+    private static void assertSameResult(String source) {
+        Expression expression = parse(source);
+        String expected;
+        try {
+            expected = Interpreter.stringify(new Interpreter().evaluate(expression));
+        } catch (RuntimeError error) {
+            expected = error.getLine() + ": " + error.getMessage();
+        }
+        assertEquals(expected, run(source), source);
+    }
+
+    // A balanced sum of x + i for every i in [from, to), which does not fold.
+    private static String sum(int from, int to) {
+        if (to - from == 1) return "x + " + from;
+        int middle = (from + to) >>> 1;
+        return "(" + sum(from, middle) + ") + (" + sum(middle, to) + ")";
+    }
+
+    private static String run(String source) {
+        try {
+            return Interpreter.stringify(new VM().run(new Compiler().compile(parse(source))));
+        } catch (RuntimeError error) {
+            return error.getLine() + ": " + error.getMessage();
+        }
+    }
+
+    private static Expression parse(String source) {
+        ErrorReporter reporter = new ErrorReporter();
+        Expression expression = new PrattParser(new Scanner(source, reporter).scanBuffer().stream(), reporter).parse();
+        assertEquals(0, reporter.errorCount(), () -> source + ": " + reporter.getDiagnostics());
+        return expression;
+    }
+}